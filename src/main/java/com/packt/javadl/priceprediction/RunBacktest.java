@@ -0,0 +1,50 @@
+package com.packt.javadl.priceprediction;
+
+import com.packt.javadl.priceprediction.backtest.BacktestResult;
+import com.packt.javadl.priceprediction.backtest.Backtester;
+import com.packt.javadl.priceprediction.backtest.DecisionRule;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replay the history of every symbol bar by bar through its latest model, see {@link Backtester}.
+ * <p>
+ * Usage: RunBacktest [--symbols AUD,CHF|all] [--category ALL] [--rule signals:0.5[:execute]|close:0.0005]
+ * [--costBps 0] [--warmup exampleLength] [--parallelism cores]
+ * <p>
+ * The equity curves are written to data/backtest/[symbol]_[category].csv. MULTI models are not supported.
+ */
+public class RunBacktest {
+
+    public static void main(String[] args) {
+        Map<String, String> options = RunTraining.parseOptions(args);
+        Map<String, String> symbolFiles = RunTraining.selectSymbolFiles(options);
+        Backtester backtester = new Backtester()
+                .category(PriceCategory.valueOf(options.getOrDefault("category", "ALL")))
+                .rule(DecisionRule.parse(options.getOrDefault("rule", "signals:0.5")))
+                .costBps(Double.parseDouble(options.getOrDefault("costBps", "0")))
+                .warmupBars(Integer.parseInt(options.getOrDefault("warmup", "-1")));
+        int parallelism = Integer.parseInt(options.getOrDefault("parallelism", String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        long start = System.nanoTime();
+        List<BacktestResult> results = backtester.run(symbolFiles, parallelism);
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        long bars = 0;
+        int trades = 0;
+        int winningTrades = 0;
+        for (BacktestResult result : results) {
+            Backtester.print(result);
+            bars += result.getBars();
+            trades += result.getTrades();
+            winningTrades += result.getWinningTrades();
+        }
+        LoggingUtils.print(MessageFormat.format("Backtested {0} of {1} symbols, {2} bars in {3} ms ({4} bars/sec), {5} trades, hit rate {6,number,#.###}",
+                results.size(), symbolFiles.size(), bars, elapsedMillis, bars * 1000 / elapsedMillis,
+                trades, trades == 0 ? 0 : (double) winningTrades / trades));
+    }
+}
@@ -0,0 +1,54 @@
+package com.packt.javadl.priceprediction;
+
+import com.packt.javadl.priceprediction.inference.ModelKey;
+import com.packt.javadl.priceprediction.inference.ModelRegistry;
+import com.packt.javadl.priceprediction.neuralnetwork.FineTuner;
+import com.packt.javadl.priceprediction.neuralnetwork.ModelArtifact;
+import com.packt.javadl.priceprediction.neuralnetwork.ModelMetadata;
+import com.packt.javadl.priceprediction.representation.FeatureStore;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.representation.StockBinaryCache;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.Map;
+
+/**
+ * Fine-tune the latest model of a symbol on the bars appended to data/[symbol].csv since its training.
+ * <p>
+ * Usage: RunFineTune [--symbol AUD] [--category BUY] [--epochs 5] [--replayRatio 1.0] [--splitRatio 1.0]
+ * <p>
+ * Starts from the model served as the latest one (see {@link ModelRegistry#defaultLocation}): the highest
+ * data/models/[symbol]/StockPriceLSTM_[category]_v[N].zip, then data/models/[symbol]/StockPriceLSTM_[category].zip,
+ * then data/StockPriceLSTM_[category].zip, and writes version N + 1.
+ */
+public class RunFineTune {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = RunTraining.parseOptions(args);
+        String symbol = options.getOrDefault("symbol", "AUD");
+        String category = options.getOrDefault("category", "BUY");
+
+        File checkpoint = ModelRegistry.defaultLocation(ModelKey.latest(symbol, PriceCategory.valueOf(category)));
+        ModelMetadata metadata = ModelArtifact.readMetadata(checkpoint);
+        if (metadata == null) {
+            throw new IOException(MessageFormat.format("{0} has no stock price metadata, it was saved without its normalizer: retrain it with RunTraining", checkpoint));
+        }
+        if (!metadata.getSymbol().equals(symbol)) {
+            throw new IllegalArgumentException(MessageFormat.format("{0} was trained on {1}, not {2}", checkpoint, metadata.getSymbol(), symbol));
+        }
+        LoggingUtils.print(MessageFormat.format("Starting from {0}, version {1}", checkpoint, metadata.getVersion()));
+
+        FeatureStore store = StockBinaryCache.load("data/" + symbol + ".csv", symbol);
+        int version = Math.max(ModelArtifact.latestVersion(symbol, category), metadata.getVersion()) + 1;
+        File output = ModelArtifact.versionFile(symbol, category, version);
+        ModelMetadata tuned = new FineTuner()
+                .epochs(Integer.parseInt(options.getOrDefault("epochs", "5")))
+                .replayRatio(Double.parseDouble(options.getOrDefault("replayRatio", "1.0")))
+                .splitRatio(Double.parseDouble(options.getOrDefault("splitRatio", "1.0")))
+                .fineTune(checkpoint, store, output);
+        LoggingUtils.print(tuned == null ? "Model is up to date" : MessageFormat.format("Done, {0}", output));
+    }
+}
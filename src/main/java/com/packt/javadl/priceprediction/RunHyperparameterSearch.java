@@ -0,0 +1,53 @@
+package com.packt.javadl.priceprediction;
+
+import com.packt.javadl.priceprediction.neuralnetwork.NetworkConfiguration;
+import com.packt.javadl.priceprediction.representation.FeatureStore;
+import com.packt.javadl.priceprediction.representation.MultiSymbolLoader;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.search.HyperparameterSearch;
+import com.packt.javadl.priceprediction.search.SearchResult;
+import com.packt.javadl.priceprediction.search.SearchResultCache;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search the smallest LSTM network and window length meeting a validation loss.
+ * <p>
+ * Usage: RunHyperparameterSearch [--symbols AUD,CHF|all] [--category BUY] [--maxLoss 0.01] [--budgetMinutes 60]
+ * [--candidates 50] [--parallelism 2] [--epochs 3] [--seed 12345] [--dataType FLOAT|DOUBLE] [--workspaces ENABLED|NONE]
+ * <p>
+ * Scored candidates are kept in data/search/[symbols]_[category].tsv, run the same command again to resume.
+ */
+public class RunHyperparameterSearch {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = RunTraining.parseOptions(args);
+        NetworkConfiguration networkConfiguration = RunTraining.networkConfiguration(options);
+        PriceCategory outputCategory = PriceCategory.valueOf(options.getOrDefault("category", "BUY"));
+
+        Map<String, FeatureStore> stores = MultiSymbolLoader.load(RunTraining.selectSymbolFiles(options));
+        String name = String.join("-", stores.keySet()) + "_" + outputCategory;
+        SearchResultCache cache = new SearchResultCache(Paths.get("data", "search", name + ".tsv"));
+
+        SearchResult result = new HyperparameterSearch()
+                .maxLoss(Double.parseDouble(options.getOrDefault("maxLoss", "0.01")))
+                .budget(Long.parseLong(options.getOrDefault("budgetMinutes", "60")), TimeUnit.MINUTES)
+                .maxCandidates(Integer.parseInt(options.getOrDefault("candidates", "50")))
+                .parallelism(Integer.parseInt(options.getOrDefault("parallelism", "2")))
+                .epochs(Integer.parseInt(options.getOrDefault("epochs", "3")))
+                .seed(Long.parseLong(options.getOrDefault("seed", "12345")))
+                .networkConfiguration(networkConfiguration)
+                .search(stores, outputCategory, cache);
+
+        if (result == null) {
+            LoggingUtils.print("No candidate scored, increase the budget");
+        } else {
+            LoggingUtils.print(MessageFormat.format("Selected {0}", result.getHyperparameters().key()));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.packt.javadl.priceprediction;
+
+import com.packt.javadl.priceprediction.inference.WindowEncoder;
+import com.packt.javadl.priceprediction.neuralnetwork.ModelArtifact;
+import com.packt.javadl.priceprediction.neuralnetwork.ModelMetadata;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.representation.StockCsvReader;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Predict the bar following the last bars of a CSV file, using only a model saved with its metadata.
+ * <p>
+ * Usage: RunInference [data/StockPriceLSTM_BUY.zip] [data/AUD.csv]
+ * <p>
+ * A model zip saved without its metadata is rejected, its normalizer is unknown: retrain it with RunTraining.
+ */
+public class RunInference {
+
+    public static void main(String[] args) throws IOException {
+        String modelPath = args.length > 0 ? args[0] : ModelArtifact.defaultFile(String.valueOf(PriceCategory.BUY)).getPath();
+        String barsPath = args.length > 1 ? args[1] : "data/AUD.csv";
+
+        long start = System.nanoTime();
+        ModelArtifact artifact = ModelArtifact.restore(new File(modelPath));
+        ModelMetadata metadata = artifact.getMetadata();
+        LoggingUtils.print(MessageFormat.format("Restored {0} model of {1} version {2} in {3} ms",
+                metadata.getCategory(), metadata.getSymbol(), metadata.getVersion(), (System.nanoTime() - start) / 1_000_000));
+
+        // only the last exampleLength bars are kept
+        int exampleLength = metadata.getExampleLength();
+        double[][] window = new double[exampleLength][];
+        int[] rows = {0};
+        new StockCsvReader().read(barsPath, (timestamp, features) -> window[rows[0]++ % exampleLength] = features.clone());
+        if (rows[0] < exampleLength) {
+            throw new IllegalArgumentException(MessageFormat.format("{0} has {1} bars, {2} are needed", barsPath, rows[0], exampleLength));
+        }
+        double[][] ordered = new double[exampleLength][];
+        for (int c = 0; c < exampleLength; c++) {
+            ordered[c] = window[(rows[0] + c) % exampleLength];
+        }
+
+        List<double[][]> windows = new ArrayList<>();
+        windows.add(ordered);
+        INDArray output = artifact.output(WindowEncoder.encode(windows, metadata));
+        double[] prediction = WindowEncoder.decodeLastStep(output, metadata)[0];
+
+        for (int n = 0; n < prediction.length; n++) {
+            LoggingUtils.print(MessageFormat.format("Predicted next {0}: {1}",
+                    PriceCategory.fromFeatureIndex(metadata.outputFeatureIndex(n)), prediction[n]));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.packt.javadl.priceprediction;
+
+import com.packt.javadl.priceprediction.neuralnetwork.ModelArtifact;
+import com.packt.javadl.priceprediction.neuralnetwork.ModelMetadata;
+import com.packt.javadl.priceprediction.neuralnetwork.NetworkConfiguration;
+import com.packt.javadl.priceprediction.neuralnetwork.RecurrentNets;
+import com.packt.javadl.priceprediction.representation.FeatureStore;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.representation.StockBinaryCache;
+import com.packt.javadl.priceprediction.representation.StockDataSetIterator;
+import com.packt.javadl.priceprediction.representation.StockMultiDataSetIterator;
+import com.packt.javadl.priceprediction.representation.TestDataSource;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.Map;
+
+/**
+ * Train the shared trunk multi-output network, then score every signal of the test windows with one forward pass per batch.
+ * <p>
+ * Usage: RunMultiOutputTraining [--symbol AUD] [--epochs 100] [--dataType FLOAT|DOUBLE] [--workspaces ENABLED|NONE]
+ * <p>
+ * The graph is saved with its normalizer as the next version of the MULTI model of the symbol,
+ * data/models/[symbol]/StockPriceLSTM_MULTI_v[N].zip, served like the other models with category MULTI.
+ */
+public class RunMultiOutputTraining {
+    private static final int exampleLength = 22; // time series length, assume 22 working days per month
+    private static final int evaluationBatchSize = 256;
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = RunTraining.parseOptions(args);
+        NetworkConfiguration networkConfiguration = RunTraining.networkConfiguration(options);
+        String symbol = options.getOrDefault("symbol", "AUD");
+        int epochs = Integer.parseInt(options.getOrDefault("epochs", "100"));
+
+        int batchSize = 128; // mini-batch size
+        double splitRatio = 0.8; // 80% for training, 20% for testing
+
+        LoggingUtils.print("Creating dataSet iterator...");
+        FeatureStore store = StockBinaryCache.load("data/" + symbol + ".csv", symbol);
+        StockMultiDataSetIterator iterator = new StockMultiDataSetIterator(store, batchSize, exampleLength, splitRatio);
+
+        LoggingUtils.print("Building LSTM graph...");
+        ComputationGraph graph = RecurrentNets.multiOutputLstmGraph(StockDataSetIterator.VECTOR_SIZE, networkConfiguration);
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            iterator.reset();
+            graph.fit(iterator);
+        }
+        String category = String.valueOf(PriceCategory.MULTI);
+        int version = ModelArtifact.nextVersion(symbol, category);
+        ModelMetadata metadata = ModelMetadata.fromIterator(iterator.getIterator(), version);
+        metadata.setCategory(PriceCategory.MULTI);
+        ModelArtifact.save(graph, metadata, ModelArtifact.versionFile(symbol, category, version));
+
+        evaluate(graph, iterator.getIterator());
+        LoggingUtils.print("Done...");
+    }
+
+    private static void evaluate(ComputationGraph graph, StockDataSetIterator iterator) {
+        TestDataSource test = iterator.getTestDataSet();
+        int closeIndex = PriceCategory.CLOSE.featureIndex;
+        double closeMin = iterator.getMinArray()[closeIndex];
+        double closeMax = iterator.getMaxArray()[closeIndex];
+
+        int decisionHits = 0;
+        int executeHits = 0;
+        double closeSquaredErrors = 0;
+        long start = System.nanoTime();
+        for (int from = 0; from < test.size(); from += evaluationBatchSize) {
+            int count = Math.min(evaluationBatchSize, test.size() - from);
+            // prices, decision and execute of every window in a single forward pass
+            INDArray[] outputs = graph.output(false, test.getInputBatch(from, count));
+            for (int i = 0; i < count; i++) {
+                double close = outputs[0].getDouble(i, closeIndex, exampleLength - 1) * (closeMax - closeMin) + closeMin;
+                double error = close - test.getActual(from + i, closeIndex);
+                closeSquaredErrors += error * error;
+                if (argMax(outputs[1], i) == actualArgMax(test, from + i, PriceCategory.BUY.featureIndex, ModelMetadata.DECISION_OUTPUTS)) {
+                    decisionHits++;
+                }
+                if (argMax(outputs[2], i) == actualArgMax(test, from + i, PriceCategory.EXECUTE.featureIndex, ModelMetadata.EXECUTE_OUTPUTS)) {
+                    executeHits++;
+                }
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        int windows = Math.max(1, test.size());
+        LoggingUtils.print(MessageFormat.format("Scored every signal of {0} test windows in {1} ms", test.size(), elapsedMillis));
+        LoggingUtils.print(MessageFormat.format("Decision accuracy {0,number,#.###}, execute accuracy {1,number,#.###}, close RMSE {2}",
+                (double) decisionHits / windows, (double) executeHits / windows, Math.sqrt(closeSquaredErrors / windows)));
+    }
+
+    /**
+     * @return most probable class at the last time step
+     */
+    private static int argMax(INDArray output, int index) {
+        int best = 0;
+        for (int n = 1; n < output.size(1); n++) {
+            if (output.getDouble(index, n, exampleLength - 1) > output.getDouble(index, best, exampleLength - 1)) best = n;
+        }
+        return best;
+    }
+
+    private static int actualArgMax(TestDataSource test, int index, int firstFeature, int count) {
+        int best = 0;
+        for (int n = 1; n < count; n++) {
+            if (test.getActual(index, firstFeature + n) > test.getActual(index, firstFeature + best)) best = n;
+        }
+        return best;
+    }
+}
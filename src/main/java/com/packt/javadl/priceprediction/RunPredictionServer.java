@@ -0,0 +1,60 @@
+package com.packt.javadl.priceprediction;
+
+import com.packt.javadl.priceprediction.inference.MicroBatcher;
+import com.packt.javadl.priceprediction.inference.ModelRegistry;
+import com.packt.javadl.priceprediction.inference.PredictionCache;
+import com.packt.javadl.priceprediction.server.PredictionServer;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serve the saved models over HTTP, see {@link PredictionServer}.
+ * <p>
+ * Usage: RunPredictionServer [--port 8080] [--maxBatch 64] [--maxDelayMicros 2000] [--workers cores]
+ * [--handlers 64] [--maxModels 32] [--maxModelMegabytes 1024] [--cacheEntries 100000] [--cacheTtlSeconds 300]
+ * <p>
+ * --cacheEntries 0 disables the prediction cache.
+ * <p>
+ * curl --data-binary @bars.csv "http://localhost:8080/predict?symbol=AUD&amp;category=BUY"
+ */
+public class RunPredictionServer {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = RunTraining.parseOptions(args);
+
+        ModelRegistry registry = new ModelRegistry(
+                Integer.parseInt(options.getOrDefault("maxModels", "32")),
+                Long.parseLong(options.getOrDefault("maxModelMegabytes", "1024")) * 1024 * 1024);
+        MicroBatcher batcher = new MicroBatcher(registry,
+                Integer.parseInt(options.getOrDefault("maxBatch", "64")),
+                Long.parseLong(options.getOrDefault("maxDelayMicros", "2000")), TimeUnit.MICROSECONDS,
+                Integer.parseInt(options.getOrDefault("workers", String.valueOf(Runtime.getRuntime().availableProcessors()))));
+        int cacheEntries = Integer.parseInt(options.getOrDefault("cacheEntries", "100000"));
+        PredictionCache cache = cacheEntries == 0 ? null
+                : new PredictionCache(cacheEntries, Long.parseLong(options.getOrDefault("cacheTtlSeconds", "300")), TimeUnit.SECONDS);
+        PredictionServer server = new PredictionServer(
+                Integer.parseInt(options.getOrDefault("port", "8080")),
+                Integer.parseInt(options.getOrDefault("handlers", "64")), registry, batcher, cache);
+
+        // pick up fine-tuned versions and log the figures every minute
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "prediction-server-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> {
+            registry.refresh();
+            server.printStats();
+        }, 1, 1, TimeUnit.MINUTES);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.printStats();
+            server.close();
+        }));
+        server.start();
+    }
+}
@@ -0,0 +1,88 @@
+package com.packt.javadl.priceprediction;
+
+import com.packt.javadl.priceprediction.neuralnetwork.ModelArtifact;
+import com.packt.javadl.priceprediction.neuralnetwork.ModelMetadata;
+import com.packt.javadl.priceprediction.neuralnetwork.NetworkConfiguration;
+import com.packt.javadl.priceprediction.neuralnetwork.ParallelTrainer;
+import com.packt.javadl.priceprediction.neuralnetwork.RecurrentNets;
+import com.packt.javadl.priceprediction.neuralnetwork.SparkTrainer;
+import com.packt.javadl.priceprediction.representation.FeatureStore;
+import com.packt.javadl.priceprediction.representation.MultiSymbolDataSetIterator;
+import com.packt.javadl.priceprediction.representation.MultiSymbolLoader;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.Map;
+
+/**
+ * Train a network with Spark parameter averaging, local[*] by default, and compare its throughput with single JVM training.
+ * <p>
+ * Usage: RunSparkTraining [--symbols AUD,CHF|all] [--category BUY] [--network full|light] [--epochs 3]
+ * [--master local[*]] [--averagingFrequency 5] [--prefetch 2] [--compare true|false] [--dataType FLOAT|DOUBLE] [--workspaces ENABLED|NONE]
+ */
+public class RunSparkTraining {
+    private static final int exampleLength = 22; // time series length, assume 22 working days per month
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = RunTraining.parseOptions(args);
+        NetworkConfiguration networkConfiguration = RunTraining.networkConfiguration(options);
+
+        int batchSize = 128; // mini-batch size
+        double splitRatio = 0.8; // 80% for training, 20% for testing
+        PriceCategory outputCategory = PriceCategory.valueOf(options.getOrDefault("category", "BUY"));
+        boolean compare = Boolean.parseBoolean(options.getOrDefault("compare", "true"));
+
+        LoggingUtils.print("Creating dataSet iterator...");
+        Map<String, String> symbolFiles = RunTraining.selectSymbolFiles(options);
+        // the driver keeps the stores for the validation and the normalizers only, the executors read the files again
+        Map<String, FeatureStore> stores = MultiSymbolLoader.load(symbolFiles);
+        MultiSymbolDataSetIterator iterator = new MultiSymbolDataSetIterator(stores, batchSize, exampleLength, splitRatio, outputCategory);
+
+        LoggingUtils.print("Building LSTM networks...");
+        MultiLayerNetwork net = options.getOrDefault("network", "full").equals("light")
+                ? RecurrentNets.lightLstmNetwork(iterator.inputColumns(), iterator.totalOutcomes(), networkConfiguration)
+                : RecurrentNets.fullLstmNetwork(iterator.inputColumns(), iterator.totalOutcomes(), networkConfiguration);
+
+        SparkTrainer trainer = new SparkTrainer()
+                .master(options.getOrDefault("master", "local[*]"))
+                .epochs(Integer.parseInt(options.getOrDefault("epochs", "3")))
+                .averagingFrequency(Integer.parseInt(options.getOrDefault("averagingFrequency", "5")))
+                .workerPrefetch(Integer.parseInt(options.getOrDefault("prefetch", "2")));
+
+        // same initial parameters for both runs
+        MultiLayerNetwork localNet = compare ? net.clone() : null;
+        double[] sparkRates = trainer.fit(net, symbolFiles, batchSize, exampleLength, splitRatio, outputCategory);
+
+        ParallelTrainer evaluator = new ParallelTrainer();
+        double sparkLoss = evaluator.testLoss(net, iterator);
+        LoggingUtils.print(MessageFormat.format("Spark: {0,number,#.#} examples/sec, test loss {1}", steadyRate(sparkRates), sparkLoss));
+
+        if (compare) {
+            double[] localRates = trainer.fitLocal(localNet, iterator);
+            double localLoss = evaluator.testLoss(localNet, iterator);
+            LoggingUtils.print(MessageFormat.format("Single JVM: {0,number,#.#} examples/sec, test loss {1}", steadyRate(localRates), localLoss));
+            LoggingUtils.print(MessageFormat.format("Spark / single JVM throughput: x{0,number,#.##}", steadyRate(sparkRates) / steadyRate(localRates)));
+        }
+
+        for (String symbol : stores.keySet()) {
+            String category = String.valueOf(outputCategory);
+            int version = ModelArtifact.nextVersion(symbol, category);
+            ModelArtifact.save(net, ModelMetadata.fromIterator(iterator.getIterator(symbol), version),
+                    ModelArtifact.versionFile(symbol, category, version));
+        }
+        LoggingUtils.print("Done...");
+    }
+
+    /**
+     * Mean examples per second, the first epoch is left out as warm-up when there are more
+     */
+    private static double steadyRate(double[] rates) {
+        int from = rates.length > 1 ? 1 : 0;
+        double sum = 0;
+        for (int i = from; i < rates.length; i++) sum += rates[i];
+        return sum / (rates.length - from);
+    }
+}
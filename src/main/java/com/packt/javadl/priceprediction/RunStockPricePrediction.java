@@ -1,8 +1,12 @@
 package com.packt.javadl.priceprediction;
 
+import com.packt.javadl.priceprediction.inference.MultiStepForecaster;
+import com.packt.javadl.priceprediction.neuralnetwork.ModelArtifact;
+import com.packt.javadl.priceprediction.neuralnetwork.NetworkConfiguration;
 import com.packt.javadl.priceprediction.neuralnetwork.RecurrentNets;
 import com.packt.javadl.priceprediction.representation.PriceCategory;
 import com.packt.javadl.priceprediction.representation.StockDataSetIterator;
+import com.packt.javadl.priceprediction.representation.TestDataSource;
 import com.packt.javadl.priceprediction.utils.LoggingUtils;
 import com.packt.javadl.priceprediction.utils.Pair;
 import com.packt.javadl.priceprediction.utils.PlotUtil;
@@ -12,17 +16,19 @@ import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.optimize.listeners.PerformanceListener;
 import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
 import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 
 import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
-import java.util.List;
 
 public class RunStockPricePrediction {
     private static final int exampleLength = 22; // time series length, assume 22 working days per month
     private static StockDataSetIterator iterator;
+    private static NetworkConfiguration networkConfiguration;
 
     public static void main(String[] args) throws IOException {
 
@@ -37,6 +43,16 @@ public class RunStockPricePrediction {
         // TODO : Increase to 100 in production
         int epochs = 100; // training epochs
 
+        // test windows scored per forward pass, 0 to score them one by one with rnnTimeStep and fit
+        int evaluationBatchSize = 256;
+
+        // bars forecast after the last test windows, 12 bars of 5 minutes is one hour, 0 to disable
+        int forecastHorizon = 12;
+
+        // workspace modes and precision, see WorkspaceBenchmark, the precision must be set before loading data
+        networkConfiguration = NetworkConfiguration.defaults();
+        networkConfiguration.applyDataType();
+
         LoggingUtils.print("Creating dataSet iterator...");
 
         //Change to ALL for LSTM to generate All fields or Use a specific Field
@@ -44,11 +60,11 @@ public class RunStockPricePrediction {
 
         iterator = new StockDataSetIterator(filePath, symbol, batchSize, exampleLength, splitRatio, outputCategory);
         LoggingUtils.print("Loading test dataset...");
-        List<Pair<INDArray, INDArray>> test = iterator.getTestDataSet();
+        TestDataSource test = iterator.getTestDataSet();
 
         //TODO : change from fullLstmNetwork to lightLstmNetwork for dev
         LoggingUtils.print("Building LSTM networks...");
-        MultiLayerNetwork net = RecurrentNets.fullLstmNetwork(iterator.inputColumns(), iterator.totalOutcomes());
+        MultiLayerNetwork net = RecurrentNets.fullLstmNetwork(iterator.inputColumns(), iterator.totalOutcomes(), networkConfiguration);
 
         //Configure where the network information (gradients, activations, score vs. time etc) is to be stored
         //Then add the StatsListener to collect this information from the network, as it trains
@@ -56,10 +72,11 @@ public class RunStockPricePrediction {
         int listenerFrequency = 1;
         net.setListeners(new ScoreIterationListener(listenerFrequency), new PerformanceListener(listenerFrequency));
 
-        File locationToSave = new File("data/StockPriceLSTM_".concat(String.valueOf(outputCategory)).concat(".zip"));
+        File locationToSave = ModelArtifact.defaultFile(String.valueOf(outputCategory));
 
         LoggingUtils.print("Restoring model...");
         net = ModelSerializer.restoreMultiLayerNetwork(locationToSave);
+        networkConfiguration.applyTo(net);
 
         net.setListeners(new ScoreIterationListener(listenerFrequency));
 
@@ -72,36 +89,77 @@ public class RunStockPricePrediction {
         }
         LoggingUtils.print("Total number of network parameters: " + totalNumParams);
 
+        if (test.size() == 0) {
+            LoggingUtils.print(MessageFormat.format("No test window after the split at {0}, nothing to evaluate", iterator.getSplit()));
+            return;
+        }
+
         LoggingUtils.print("Evaluating...");
         if (outputCategory.equals(PriceCategory.ALL)) {
             INDArray max = Nd4j.create(iterator.getMaxArray());
             INDArray min = Nd4j.create(iterator.getMinArray());
-            predictAllCategories(net, test, max, min);
+            predictAllCategories(net, test, max, min, evaluationBatchSize);
         } else {
             double max = iterator.getMaxNum(outputCategory);
             double min = iterator.getMinNum(outputCategory);
-            predictPriceOneAhead(net, test, max, min, outputCategory);
+            predictPriceOneAhead(net, test, max, min, outputCategory, evaluationBatchSize);
+        }
+        if (forecastHorizon > 0) {
+            forecastHorizon(net, test, outputCategory, forecastHorizon);
         }
         LoggingUtils.print("Done...");
     }
 
+    /**
+     * Score the test windows evaluationBatchSize at a time with stateless forward passes. Every batch runs in the
+     * inference workspace, its input and activations are reused by the next batch and only the last step is copied out.
+     *
+     * @return normalized output of the last time step of every window, [windows, nOut]
+     */
+    private static INDArray predictLastSteps(MultiLayerNetwork net, TestDataSource testData, int evaluationBatchSize) {
+        long start = System.nanoTime();
+        int nOut = testData.getCategory() == PriceCategory.ALL ? StockDataSetIterator.VECTOR_SIZE : 1;
+        INDArray predictions = Nd4j.create(testData.size(), nOut);
+        for (int from = 0; from < testData.size(); from += evaluationBatchSize) {
+            int count = Math.min(evaluationBatchSize, testData.size() - from);
+            try (MemoryWorkspace ignored = networkConfiguration.inferenceScope()) {
+                INDArray output = net.output(testData.getInputBatch(from, count), false);
+                predictions.get(NDArrayIndex.interval(from, from + count), NDArrayIndex.all())
+                        .assign(output.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(exampleLength - 1)));
+            }
+        }
+        LoggingUtils.print(MessageFormat.format("Scored {0} test windows in {1} ms, batch size {2}",
+                testData.size(), (System.nanoTime() - start) / 1_000_000, evaluationBatchSize));
+        return predictions;
+    }
+
     /**
      * Predict one feature of a stock one-day ahead
      */
-    private static void predictPriceOneAhead(MultiLayerNetwork net, List<Pair<INDArray, INDArray>> testData, double max, double min, PriceCategory category) {
+    private static void predictPriceOneAhead(MultiLayerNetwork net, TestDataSource testData, double max, double min, PriceCategory category, int evaluationBatchSize) {
 
         LoggingUtils.print(MessageFormat.format("Predicting one day ahead... category {0}, min {1}, max {2}", category, min, max));
 
         double[] predicts = new double[testData.size()];
         double[] actuals = new double[testData.size()];
 
-        for (int i = 0; i < testData.size(); i++) {
-            // Change this to get more than one step ahead
-            predicts[i] = net.rnnTimeStep(testData.get(i).getKey()).getDouble(exampleLength - 1) * (max - min) + min;
-            actuals[i] = testData.get(i).getValue().getDouble(0);
-
-            // Fit model using last step of the sequence only
-            net.fit(testData.get(i).getKey(), testData.get(i).getValue());
+        if (evaluationBatchSize > 0) {
+            INDArray predictions = predictLastSteps(net, testData, evaluationBatchSize);
+            for (int i = 0; i < testData.size(); i++) {
+                predicts[i] = predictions.getDouble(i, 0) * (max - min) + min;
+                actuals[i] = testData.getActual(i, category.featureIndex);
+            }
+        } else {
+            // windows are built one at a time, the test set is never fully in memory
+            for (int i = 0; i < testData.size(); i++) {
+                Pair<INDArray, INDArray> window = testData.get(i);
+                // See MultiStepForecaster to get more than one step ahead
+                predicts[i] = net.rnnTimeStep(window.getKey()).getDouble(exampleLength - 1) * (max - min) + min;
+                actuals[i] = window.getValue().getDouble(0);
+
+                // Fit model using last step of the sequence only
+                net.fit(window.getKey(), window.getValue());
+            }
         }
 
         RegressionEvaluation eval = net.evaluateRegression(iterator);
@@ -117,19 +175,54 @@ public class RunStockPricePrediction {
         PlotUtil.plot(predicts, actuals, String.valueOf(category));
     }
 
+    /**
+     * Forecast the horizon bars following a test window whose actual bars are known, and compare them
+     */
+    private static void forecastHorizon(MultiLayerNetwork net, TestDataSource testData, PriceCategory category, int horizon) {
+        if (testData.size() < horizon) return;
+        int index = testData.size() - horizon;
+        int featureIndex = category == PriceCategory.ALL ? PriceCategory.CLOSE.featureIndex : category.featureIndex;
+
+        long start = System.nanoTime();
+        MultiStepForecaster forecaster = new MultiStepForecaster(net, category, iterator.getMinArray(), iterator.getMaxArray());
+        double[][] forecast = forecaster.forecast(testData.getInputBatch(index, 1), horizon)[0];
+        LoggingUtils.print(MessageFormat.format("Forecast {0} bars ahead in {1} ms", horizon, (System.nanoTime() - start) / 1_000_000));
+
+        double[] predicts = new double[horizon];
+        double[] actuals = new double[horizon];
+        LoggingUtils.print("Forecast, Actual");
+        for (int step = 0; step < horizon; step++) {
+            predicts[step] = forecast[step][category == PriceCategory.ALL ? featureIndex : 0];
+            actuals[step] = testData.getActual(index + step, featureIndex);
+            LoggingUtils.print(predicts[step] + "," + actuals[step]);
+        }
+        PlotUtil.plot(predicts, actuals, PriceCategory.fromFeatureIndex(featureIndex).name() + " forecast");
+    }
+
     /**
      * Predict all the features (open, close, low, high prices and volume) of a stock one-day ahead
      */
-    private static void predictAllCategories(MultiLayerNetwork net, List<Pair<INDArray, INDArray>> testData, INDArray max, INDArray min) {
+    private static void predictAllCategories(MultiLayerNetwork net, TestDataSource testData, INDArray max, INDArray min, int evaluationBatchSize) {
 
         LoggingUtils.print(MessageFormat.format("Predicting one day ahead... for all categories, min {1}, max {2}", min, max));
 
         INDArray[] predicts = new INDArray[testData.size()];
         INDArray[] actuals = new INDArray[testData.size()];
-        for (int i = 0; i < testData.size(); i++) {
-            predicts[i] = net.rnnTimeStep(testData.get(i).getKey()).getRow(exampleLength - 1).mul(max.sub(min)).add(min);
-            actuals[i] = testData.get(i).getValue();
-            net.fit(testData.get(i).getKey(), testData.get(i).getValue());
+        INDArray range = max.sub(min);
+
+        if (evaluationBatchSize > 0) {
+            INDArray predictions = predictLastSteps(net, testData, evaluationBatchSize).muliRowVector(range).addiRowVector(min);
+            for (int i = 0; i < testData.size(); i++) {
+                predicts[i] = predictions.getRow(i);
+                actuals[i] = testData.get(i).getValue();
+            }
+        } else {
+            for (int i = 0; i < testData.size(); i++) {
+                Pair<INDArray, INDArray> window = testData.get(i);
+                predicts[i] = net.rnnTimeStep(window.getKey()).getRow(exampleLength - 1).mul(range).addi(min);
+                actuals[i] = window.getValue();
+                net.fit(window.getKey(), window.getValue());
+            }
         }
 
         RegressionEvaluation eval = net.evaluateRegression(iterator);
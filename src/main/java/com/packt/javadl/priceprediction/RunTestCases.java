@@ -0,0 +1,54 @@
+package com.packt.javadl.priceprediction;
+
+import com.packt.javadl.priceprediction.inference.ModelRegistry;
+import com.packt.javadl.priceprediction.inference.TestCaseScorer;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import com.packt.javadl.priceprediction.utils.TestCases;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Regression scoring of the latest models against the labelled {@link TestCases}, see {@link TestCaseScorer}.
+ * <p>
+ * Usage: RunTestCases [--currencies AUD,CHF|all] [--models all|flags] [--batchSize 64] [--maxConcurrentCalls cores]
+ * <p>
+ * --models all scores with the ALL model of every currency, --models flags with its BUY, SELL, NO_DECISION,
+ * EXECUTE and NO_EXECUTE models.
+ */
+public class RunTestCases {
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = RunTraining.parseOptions(args);
+        String currencies = options.getOrDefault("currencies", "all");
+        Collection<String> selected = currencies.equals("all") ? TestCases.getCurrencies() : Arrays.asList(currencies.split(","));
+        List<PriceCategory> models = options.getOrDefault("models", "all").equals("flags") ? TestCaseScorer.FLAG_MODELS : TestCaseScorer.ALL_MODEL;
+        int maxConcurrentCalls = Integer.parseInt(options.getOrDefault("maxConcurrentCalls", String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        ModelRegistry registry = new ModelRegistry(Math.max(1, selected.size() * models.size()), Long.MAX_VALUE);
+        TestCaseScorer scorer = new TestCaseScorer(registry, models, Integer.parseInt(options.getOrDefault("batchSize", "64")), maxConcurrentCalls);
+
+        long start = System.nanoTime();
+        Map<String, TestCaseScorer.CurrencyScore> scores = scorer.score(selected);
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        int cases = 0;
+        int hits = 0;
+        int failed = 0;
+        for (TestCaseScorer.CurrencyScore score : scores.values()) {
+            TestCaseScorer.print(score);
+            cases += score.getCases();
+            hits += score.getBothHits();
+            failed += score.getFailedCases();
+        }
+        LoggingUtils.print(MessageFormat.format("Scored {0} test cases of {1} currencies in {2} ms on {3} threads ({4} cases/sec), accuracy {5,number,#.###}, {6} not scored",
+                cases, scores.size(), elapsedMillis, scorer.usesVirtualThreads() ? "virtual" : "platform",
+                cases * 1000L / elapsedMillis, cases == 0 ? 0 : (double) hits / cases, failed));
+        registry.printStats();
+        if (failed > 0) System.exit(1);
+    }
+}
@@ -0,0 +1,128 @@
+package com.packt.javadl.priceprediction;
+
+import com.packt.javadl.priceprediction.neuralnetwork.ModelArtifact;
+import com.packt.javadl.priceprediction.neuralnetwork.NetworkConfiguration;
+import com.packt.javadl.priceprediction.neuralnetwork.ParallelTrainer;
+import com.packt.javadl.priceprediction.neuralnetwork.RecurrentNets;
+import com.packt.javadl.priceprediction.representation.FeatureStore;
+import com.packt.javadl.priceprediction.representation.MultiSymbolDataSetIterator;
+import com.packt.javadl.priceprediction.representation.MultiSymbolLoader;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import org.deeplearning4j.nn.conf.WorkspaceMode;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.parallelism.ParallelWrapper;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Train a network on all the local cores.
+ * <p>
+ * Usage: RunTraining [--symbols AUD,CHF|all] [--category BUY] [--network full|light] [--epochs 100] [--patience 10]
+ * [--validation 0.1] [--workers cores] [--averagingFrequency 3] [--prefetch 8] [--mode AVERAGING|SHARED_GRADIENTS]
+ * [--dataType FLOAT|DOUBLE] [--workspaces ENABLED|NONE]
+ * <p>
+ * The epoch with the best loss on the validation rows, the end of the training rows, is saved as the next version,
+ * data/models/[symbol]/StockPriceLSTM_[category]_v[N].zip, for every symbol, and to data/StockPriceLSTM_[category].zip
+ * when a single symbol is trained. It is then scored on the test windows.
+ */
+public class RunTraining {
+    private static final int exampleLength = 22; // time series length, assume 22 working days per month
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        NetworkConfiguration networkConfiguration = networkConfiguration(options);
+
+        int batchSize = 128; // mini-batch size
+        double splitRatio = 0.8; // 80% for training, 20% for testing
+        PriceCategory outputCategory = PriceCategory.valueOf(options.getOrDefault("category", "BUY"));
+
+        LoggingUtils.print("Creating dataSet iterator...");
+        Map<String, FeatureStore> stores = MultiSymbolLoader.load(selectSymbolFiles(options));
+        MultiSymbolDataSetIterator iterator = new MultiSymbolDataSetIterator(stores, batchSize, exampleLength, splitRatio, outputCategory);
+
+        LoggingUtils.print("Building LSTM networks...");
+        MultiLayerNetwork net = options.getOrDefault("network", "full").equals("light")
+                ? RecurrentNets.lightLstmNetwork(iterator.inputColumns(), iterator.totalOutcomes(), networkConfiguration)
+                : RecurrentNets.fullLstmNetwork(iterator.inputColumns(), iterator.totalOutcomes(), networkConfiguration);
+
+        Map<String, File> checkpoints = new HashMap<>();
+        for (String symbol : stores.keySet()) {
+            String category = String.valueOf(outputCategory);
+            checkpoints.put(symbol, ModelArtifact.versionFile(symbol, category, ModelArtifact.nextVersion(symbol, category)));
+        }
+
+        ParallelTrainer trainer = new ParallelTrainer()
+                .epochs(Integer.parseInt(options.getOrDefault("epochs", "100")))
+                .patience(Integer.parseInt(options.getOrDefault("patience", "10")))
+                .validationRatio(Double.parseDouble(options.getOrDefault("validation", "0.1")))
+                .workers(Integer.parseInt(options.getOrDefault("workers", String.valueOf(Runtime.getRuntime().availableProcessors()))))
+                .averagingFrequency(Integer.parseInt(options.getOrDefault("averagingFrequency", "3")))
+                .prefetchBuffer(Integer.parseInt(options.getOrDefault("prefetch", "8")))
+                .trainingMode(ParallelWrapper.TrainingMode.valueOf(options.getOrDefault("mode", "AVERAGING")));
+
+        long start = System.nanoTime();
+        trainer.fit(net, iterator, checkpoints);
+        LoggingUtils.print(MessageFormat.format("Training done in {0} s", (System.nanoTime() - start) / 1_000_000_000));
+
+        // every symbol has the checkpoint of the same epoch
+        String firstSymbol = stores.keySet().iterator().next();
+        ModelArtifact best = ModelArtifact.restore(checkpoints.get(firstSymbol));
+        LoggingUtils.print(MessageFormat.format("Test loss of the best epoch {0}", trainer.testLoss(best.getNet(), iterator)));
+        if (stores.size() == 1) {
+            ModelArtifact.save(best.getNet(), best.getMetadata(), ModelArtifact.defaultFile(String.valueOf(outputCategory)));
+        }
+        LoggingUtils.print("Done...");
+    }
+
+    /**
+     * data/[symbol].csv files of the --symbols option, a comma separated list or all
+     */
+    static Map<String, String> selectSymbolFiles(Map<String, String> options) {
+        Map<String, String> symbolFiles = MultiSymbolLoader.findSymbolFiles("data");
+        String symbols = options.getOrDefault("symbols", "AUD");
+        if (symbols.equals("all")) return symbolFiles;
+
+        Map<String, String> selected = new LinkedHashMap<>();
+        for (String symbol : symbols.split(",")) {
+            if (!symbolFiles.containsKey(symbol)) {
+                throw new IllegalArgumentException(MessageFormat.format("No data/{0}.csv file", symbol));
+            }
+            selected.put(symbol, symbolFiles.get(symbol));
+        }
+        return selected;
+    }
+
+    /**
+     * Workspace modes and precision of the --workspaces and --dataType options, the precision of ND4J is set here once
+     * for the whole process, before any data is loaded
+     */
+    static NetworkConfiguration networkConfiguration(Map<String, String> options) {
+        WorkspaceMode workspaceMode = WorkspaceMode.valueOf(options.getOrDefault("workspaces", "ENABLED"));
+        DataBuffer.Type dataType = DataBuffer.Type.valueOf(options.getOrDefault("dataType", String.valueOf(Nd4j.dataType())));
+        NetworkConfiguration configuration = new NetworkConfiguration(workspaceMode, workspaceMode, dataType);
+        configuration.applyDataType();
+        return configuration;
+    }
+
+    /**
+     * --name value pairs
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException(MessageFormat.format("Expected --name value, got {0}", args[i]));
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+}
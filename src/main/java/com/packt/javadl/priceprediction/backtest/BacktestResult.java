@@ -0,0 +1,57 @@
+package com.packt.javadl.priceprediction.backtest;
+
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.File;
+
+@Data
+@AllArgsConstructor
+public class BacktestResult {
+
+    private String symbol;
+    private PriceCategory category;
+
+    /**
+     * bars replayed, warm-up included
+     */
+    private long bars;
+
+    /**
+     * closed trades, the position open at the last bar is closed there
+     */
+    private int trades;
+    private int winningTrades;
+
+    /**
+     * bars held in a position, and those with a price move in its direction
+     */
+    private long barsInPosition;
+    private long winningBars;
+
+    /**
+     * final equity / initial equity - 1, net of costs
+     */
+    private double totalReturn;
+    private double maxDrawdown;
+
+    private long elapsedNanos;
+
+    /**
+     * Timestamp,Close,Position,Equity of every bar, null when not written
+     */
+    private File equityCurve;
+
+    public double hitRate() {
+        return trades == 0 ? 0 : (double) winningTrades / trades;
+    }
+
+    public double barHitRate() {
+        return barsInPosition == 0 ? 0 : (double) winningBars / barsInPosition;
+    }
+
+    public double barsPerSecond() {
+        return elapsedNanos == 0 ? 0 : bars * 1e9 / elapsedNanos;
+    }
+}
@@ -0,0 +1,224 @@
+package com.packt.javadl.priceprediction.backtest;
+
+import com.packt.javadl.priceprediction.inference.ModelKey;
+import com.packt.javadl.priceprediction.inference.ModelRegistry;
+import com.packt.javadl.priceprediction.inference.StreamingInferenceEngine;
+import com.packt.javadl.priceprediction.neuralnetwork.ModelArtifact;
+import com.packt.javadl.priceprediction.neuralnetwork.ModelMetadata;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.representation.StockCsvReader;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Replay the bars of a CSV file one at a time through the latest model of the symbol, as they would have arrived.
+ * <p>
+ * Every bar advances the recurrent state by one time step ({@link StreamingInferenceEngine}), the decision rule turns
+ * the prediction into the position held until the next bar. The equity compounds the close to close return of the
+ * position, costBps is paid on every unit of position change. Symbols are replayed in parallel, each with its own
+ * network.
+ */
+public class Backtester {
+
+    private PriceCategory category = PriceCategory.ALL;
+    private DecisionRule rule = DecisionRule.signals(0.5, false);
+    private double costBps = 0;
+    private int warmupBars = -1;
+    private File equityDirectory = new File("data/backtest");
+
+    /**
+     * model category replayed, MULTI graphs are not supported: the streaming engine steps a MultiLayerNetwork
+     */
+    public Backtester category(PriceCategory category) {
+        if (category == PriceCategory.MULTI) {
+            throw new IllegalArgumentException(MessageFormat.format("{0} models can not be backtested, use a single output category such as ALL or BUY", category));
+        }
+        this.category = category;
+        return this;
+    }
+
+    public Backtester rule(DecisionRule rule) {
+        this.rule = rule;
+        return this;
+    }
+
+    /**
+     * cost of a unit of position change, in basis points of the price
+     */
+    public Backtester costBps(double costBps) {
+        this.costBps = costBps;
+        return this;
+    }
+
+    /**
+     * bars fed before trading starts, the model window length by default
+     */
+    public Backtester warmupBars(int warmupBars) {
+        this.warmupBars = warmupBars;
+        return this;
+    }
+
+    /**
+     * directory of the [symbol]_[category].csv equity curves, null not to write them
+     */
+    public Backtester equityDirectory(File equityDirectory) {
+        this.equityDirectory = equityDirectory;
+        return this;
+    }
+
+    /**
+     * @param symbolFiles CSV file of every symbol
+     * @return results of the symbols replayed, the failures are logged and skipped
+     */
+    public List<BacktestResult> run(Map<String, String> symbolFiles, int parallelism) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        List<BacktestResult> results = new ArrayList<>();
+        try {
+            List<Future<BacktestResult>> futures = new ArrayList<>();
+            for (Map.Entry<String, String> symbolFile : symbolFiles.entrySet()) {
+                futures.add(executor.submit(() -> run(symbolFile.getKey(), symbolFile.getValue())));
+            }
+            List<String> symbols = new ArrayList<>(symbolFiles.keySet());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    LoggingUtils.print(MessageFormat.format("Backtest of {0} failed: {1}", symbols.get(i), e.getCause()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Backtest interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    public BacktestResult run(String symbol, String filename) throws IOException {
+        File modelFile = ModelRegistry.defaultLocation(ModelKey.latest(symbol, category));
+        ModelArtifact model = ModelArtifact.restore(modelFile, false);
+        ModelMetadata metadata = model.getMetadata();
+        if (metadata.getCategory() != category) {
+            throw new IOException(MessageFormat.format("{0} holds a {1} model, not {2}", modelFile, metadata.getCategory(), category));
+        }
+        LoggingUtils.print(MessageFormat.format("Backtesting {0} on {1} with {2} version {3}", symbol, filename, modelFile, metadata.getVersion()));
+
+        StreamingInferenceEngine engine = new StreamingInferenceEngine(model.getNet(), category, 1);
+        engine.registerSymbol(symbol, metadata.getMinArray(), metadata.getMaxArray());
+        int warmup = warmupBars < 0 ? metadata.getExampleLength() : warmupBars;
+
+        File curve = equityDirectory == null ? null : new File(equityDirectory, symbol + "_" + category + ".csv");
+        if (curve != null) Files.createDirectories(equityDirectory.toPath());
+
+        Account account = new Account(costBps);
+        double[] features = new double[VECTOR_SIZE];
+        double[] signals = new double[VECTOR_SIZE];
+        long start = System.nanoTime();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8);
+             Writer writer = curve == null ? Writer.nullWriter() : Files.newBufferedWriter(curve.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("Timestamp,Close,Position,Equity\n");
+            String line = reader.readLine(); // header
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                long timestamp = StockCsvReader.parseLine(line, features);
+                double close = features[PriceCategory.CLOSE.featureIndex];
+                account.mark(close);
+
+                double[] prediction = engine.onBar(symbol, features);
+                if (account.bars >= warmup) {
+                    for (int n = 0; n < prediction.length; n++) {
+                        signals[metadata.outputFeatureIndex(n)] = prediction[n];
+                    }
+                    account.trade(rule.decide(signals, features, account.position));
+                }
+                account.bars++;
+                writer.write(timestamp + "," + close + "," + account.position + "," + account.equity + "\n");
+            }
+        }
+        account.trade(DecisionRule.FLAT);
+        long elapsed = System.nanoTime() - start;
+
+        return new BacktestResult(symbol, category, account.bars, account.trades, account.winningTrades,
+                account.barsInPosition, account.winningBars, account.equity - 1, account.maxDrawdown, elapsed, curve);
+    }
+
+    public static void print(BacktestResult result) {
+        LoggingUtils.print(MessageFormat.format("{0} {1}: {2} bars in {3} ms ({4,number,#} bars/sec), return {5,number,#.####%}, max drawdown {6,number,#.####%}, {7} trades, hit rate {8,number,#.###}, bar hit rate {9,number,#.###}",
+                result.getSymbol(), result.getCategory(), result.getBars(), result.getElapsedNanos() / 1_000_000, result.barsPerSecond(),
+                result.getTotalReturn(), result.getMaxDrawdown(), result.getTrades(), result.hitRate(), result.barHitRate()));
+    }
+
+    /**
+     * Position and equity of one symbol, equity starts at 1
+     */
+    static class Account {
+        private final double costBps;
+
+        long bars;
+        int position;
+        double equity = 1;
+        double peak = 1;
+        double maxDrawdown;
+        double lastClose = Double.NaN;
+
+        /**
+         * equity when the current trade was opened
+         */
+        double tradeStart;
+        int trades;
+        int winningTrades;
+        long barsInPosition;
+        long winningBars;
+
+        /**
+         * @param costBps cost of a unit of position change, in basis points of the price
+         */
+        Account(double costBps) {
+            this.costBps = costBps;
+        }
+
+        /**
+         * Apply the move since the previous bar to the position held
+         */
+        void mark(double close) {
+            if (position != 0 && lastClose > 0) {
+                double move = close / lastClose - 1;
+                equity *= 1 + position * move;
+                barsInPosition++;
+                if (position * move > 0) winningBars++;
+                peak = Math.max(peak, equity);
+                maxDrawdown = Math.max(maxDrawdown, 1 - equity / peak);
+            }
+            lastClose = close;
+        }
+
+        void trade(int target) {
+            if (target == position) return;
+            if (position != 0) {
+                trades++;
+                if (equity * (1 - costBps / 10_000) > tradeStart) winningTrades++;
+            }
+            equity *= 1 - Math.abs(target - position) * costBps / 10_000;
+            position = target;
+            tradeStart = equity;
+        }
+    }
+}
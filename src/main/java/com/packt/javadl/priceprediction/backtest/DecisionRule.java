@@ -0,0 +1,72 @@
+package com.packt.javadl.priceprediction.backtest;
+
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+
+import java.text.MessageFormat;
+
+/**
+ * Turn the prediction of the next bar into the position to hold until then
+ */
+@FunctionalInterface
+public interface DecisionRule {
+
+    int LONG = 1;
+    int FLAT = 0;
+    int SHORT = -1;
+
+    /**
+     * @param prediction predicted next bar, VECTOR_SIZE features, 0 for the features the model does not predict
+     * @param bar        current bar, not normalized
+     * @param position   position held, LONG, FLAT or SHORT
+     * @return position to hold, LONG, FLAT or SHORT
+     */
+    int decide(double[] prediction, double[] bar, int position);
+
+    /**
+     * Long on a BUY signal, short on a SELL signal, flat otherwise. A signal is the highest of the two and at least
+     * threshold. With requireExecute the position only changes when EXECUTE is at least threshold too.
+     */
+    static DecisionRule signals(double threshold, boolean requireExecute) {
+        return (prediction, bar, position) -> {
+            if (requireExecute && prediction[PriceCategory.EXECUTE.featureIndex] < threshold) return position;
+            double buy = prediction[PriceCategory.BUY.featureIndex];
+            double sell = prediction[PriceCategory.SELL.featureIndex];
+            if (buy >= threshold && buy > sell) return LONG;
+            if (sell >= threshold && sell > buy) return SHORT;
+            return FLAT;
+        };
+    }
+
+    /**
+     * Long when the predicted close is more than threshold (relative) above the current close, short when below
+     */
+    static DecisionRule priceMove(double threshold) {
+        return (prediction, bar, position) -> {
+            int close = PriceCategory.CLOSE.featureIndex;
+            double move = prediction[close] / bar[close] - 1;
+            if (move > threshold) return LONG;
+            if (move < -threshold) return SHORT;
+            return FLAT;
+        };
+    }
+
+    /**
+     * @param rule signals:[threshold][:execute] or close:[threshold], e.g. signals:0.5:execute, close:0.0005
+     */
+    static DecisionRule parse(String rule) {
+        String[] parts = rule.split(":");
+        try {
+            if (parts[0].equals("signals") && parts.length <= 3) {
+                double threshold = parts.length > 1 ? Double.parseDouble(parts[1]) : 0.5;
+                if (parts.length == 3 && !parts[2].equals("execute")) throw new IllegalArgumentException(parts[2]);
+                return signals(threshold, parts.length == 3);
+            }
+            if (parts[0].equals("close") && parts.length <= 2) {
+                return priceMove(parts.length > 1 ? Double.parseDouble(parts[1]) : 0);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(MessageFormat.format("Decision rule {0} is not parsed Correctly", rule), e);
+        }
+        throw new IllegalArgumentException(MessageFormat.format("Decision rule {0} is not parsed Correctly", rule));
+    }
+}
@@ -0,0 +1,109 @@
+package com.packt.javadl.priceprediction.benchmark;
+
+import com.packt.javadl.priceprediction.representation.FeatureStore;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.representation.StockDataSetIterator;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.text.MessageFormat;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Mini-batches per second of StockDataSetIterator.next, which bulk copies every window from the series normalized once,
+ * compared to the element by element putScalar assembly.
+ */
+public class BatchAssemblyBenchmark {
+
+    private static final int exampleLength = 22;
+    private static final int batchSize = 128;
+    private static final int warmupEpochs = 3;
+    private static final int measuredEpochs = 10;
+
+    public static void main(String[] args) {
+        String filePath = args.length > 0 ? args[0] : "data/AUD.csv";
+        String symbol = args.length > 1 ? args[1] : "AUD";
+
+        for (PriceCategory category : new PriceCategory[]{PriceCategory.BUY, PriceCategory.ALL}) {
+            StockDataSetIterator iterator = new StockDataSetIterator(filePath, symbol, batchSize, exampleLength, 1.0, category);
+
+            for (int i = 0; i < warmupEpochs; i++) {
+                putScalarEpoch(iterator, category);
+                bulkEpoch(iterator);
+            }
+
+            long start = System.nanoTime();
+            int batches = 0;
+            for (int i = 0; i < measuredEpochs; i++) batches += putScalarEpoch(iterator, category);
+            double putScalarRate = batches / ((System.nanoTime() - start) / 1e9);
+
+            start = System.nanoTime();
+            batches = 0;
+            for (int i = 0; i < measuredEpochs; i++) batches += bulkEpoch(iterator);
+            double bulkRate = batches / ((System.nanoTime() - start) / 1e9);
+
+            LoggingUtils.print(MessageFormat.format("{0}: putScalar {1,number,#.#} batches/sec, bulk from the normalized series {2,number,#.#} batches/sec, x{3,number,#.##}",
+                    category, putScalarRate, bulkRate, bulkRate / putScalarRate));
+        }
+    }
+
+    /**
+     * The production path, mini-batches of the iterator
+     */
+    private static int bulkEpoch(StockDataSetIterator iterator) {
+        iterator.reset();
+        int batches = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            batches++;
+        }
+        return batches;
+    }
+
+    /**
+     * The original assembly: every element read from the bars, normalized on the fly and written with one putScalar
+     */
+    private static int putScalarEpoch(StockDataSetIterator iterator, PriceCategory category) {
+        FeatureStore store = iterator.getStore();
+        double[] minArray = iterator.getMinArray();
+        double[] maxArray = iterator.getMaxArray();
+        int examples = iterator.totalExamples();
+        int batches = 0;
+        for (int offset = 0; offset < examples; offset += batchSize) {
+            int actualMiniBatchSize = Math.min(batchSize, examples - offset);
+            INDArray input = Nd4j.create(new int[]{actualMiniBatchSize, VECTOR_SIZE, exampleLength}, 'f');
+            INDArray label = category == PriceCategory.ALL
+                    ? Nd4j.create(new int[]{actualMiniBatchSize, VECTOR_SIZE, exampleLength}, 'f')
+                    : Nd4j.create(new int[]{actualMiniBatchSize, 1, exampleLength}, 'f');
+            for (int index = 0; index < actualMiniBatchSize; index++) {
+                int startIdx = offset + index;
+                for (int i = startIdx; i < startIdx + exampleLength; i++) {
+                    int c = i - startIdx;
+                    for (int k = 0; k < VECTOR_SIZE; k++) {
+                        PriceCategory priceCategory = PriceCategory.fromFeatureIndex(k);
+                        input.putScalar(new int[]{index, k, c}, normalize(store, minArray, maxArray, i, priceCategory));
+                    }
+                    if (category == PriceCategory.ALL) {
+                        for (int k = 0; k < VECTOR_SIZE; k++) {
+                            PriceCategory priceCategory = PriceCategory.fromFeatureIndex(k);
+                            label.putScalar(new int[]{index, k, c}, normalize(store, minArray, maxArray, i + 1, priceCategory));
+                        }
+                    } else {
+                        label.putScalar(new int[]{index, 0, c}, normalize(store, minArray, maxArray, i + 1, category));
+                    }
+                }
+            }
+            new DataSet(input, label);
+            batches++;
+        }
+        return batches;
+    }
+
+    private static double normalize(FeatureStore store, double[] minArray, double[] maxArray, int row, PriceCategory priceCategory) {
+        int k = priceCategory.featureIndex;
+        return (store.getValue(row, k) - minArray[k]) / (maxArray[k] - minArray[k]);
+    }
+}
@@ -0,0 +1,130 @@
+package com.packt.javadl.priceprediction.benchmark;
+
+import com.packt.javadl.priceprediction.neuralnetwork.NetworkConfiguration;
+import com.packt.javadl.priceprediction.neuralnetwork.RecurrentNets;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.representation.StockDataSetIterator;
+import com.packt.javadl.priceprediction.representation.TestDataSource;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import org.bytedeco.javacpp.Pointer;
+import org.deeplearning4j.nn.conf.WorkspaceMode;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+/**
+ * Throughput, allocation rate and GC activity of training and inference for every workspace mode and precision.
+ * <p>
+ * Heap allocation is measured with the thread allocated bytes of the JVM, off-heap growth with the JavaCPP
+ * allocated bytes, latency percentiles are per inference batch.
+ */
+public class WorkspaceBenchmark {
+
+    private static final int exampleLength = 22;
+    private static final int batchSize = 128;
+    private static final int evaluationBatchSize = 256;
+    private static final int warmupBatches = 20;
+    private static final int trainingBatches = 50;
+    private static final int inferenceBatches = 200;
+
+    public static void main(String[] args) {
+        String filePath = args.length > 0 ? args[0] : "data/AUD.csv";
+        String symbol = args.length > 1 ? args[1] : "AUD";
+
+        for (DataBuffer.Type dataType : new DataBuffer.Type[]{DataBuffer.Type.FLOAT, DataBuffer.Type.DOUBLE}) {
+            for (WorkspaceMode mode : new WorkspaceMode[]{WorkspaceMode.NONE, WorkspaceMode.ENABLED}) {
+                NetworkConfiguration configuration = new NetworkConfiguration(mode, mode, dataType);
+                // data is loaded again, the arrays of the previous precision can not be used
+                configuration.applyDataType();
+                StockDataSetIterator iterator = new StockDataSetIterator(filePath, symbol, batchSize, exampleLength, 0.8, PriceCategory.BUY);
+                MultiLayerNetwork net = RecurrentNets.lightLstmNetwork(iterator.inputColumns(), iterator.totalOutcomes(), configuration);
+                net.setListeners(); // no score logging while measuring
+
+                String setting = dataType + " " + mode;
+                train(net, iterator, warmupBatches);
+                Measurement measurement = new Measurement();
+                int trained = train(net, iterator, trainingBatches);
+                measurement.report(setting + " training", trained * batchSize, "examples", null);
+
+                TestDataSource test = iterator.getTestDataSet();
+                if (test.isEmpty()) continue;
+                infer(net, test, configuration, warmupBatches);
+                measurement = new Measurement();
+                long[] latencies = infer(net, test, configuration, inferenceBatches);
+                measurement.report(setting + " inference", latencies.length * (long) Math.min(evaluationBatchSize, test.size()), "windows", latencies);
+            }
+        }
+    }
+
+    private static int train(MultiLayerNetwork net, StockDataSetIterator iterator, int batches) {
+        int trained = 0;
+        while (trained < batches) {
+            if (!iterator.hasNext()) iterator.reset();
+            net.fit(iterator.next());
+            trained++;
+        }
+        return trained;
+    }
+
+    /**
+     * @return nanoseconds of every batch
+     */
+    private static long[] infer(MultiLayerNetwork net, TestDataSource test, NetworkConfiguration configuration, int batches) {
+        long[] latencies = new long[batches];
+        double checksum = 0;
+        int count = Math.min(evaluationBatchSize, test.size());
+        for (int b = 0; b < batches; b++) {
+            int from = (b * count) % (test.size() - count + 1);
+            long start = System.nanoTime();
+            try (MemoryWorkspace ignored = configuration.inferenceScope()) {
+                INDArray output = net.output(test.getInputBatch(from, count), false);
+                checksum += output.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(exampleLength - 1)).sumNumber().doubleValue();
+            }
+            latencies[b] = System.nanoTime() - start;
+        }
+        if (Double.isNaN(checksum)) LoggingUtils.print("NaN predictions");
+        return latencies;
+    }
+
+    private static class Measurement {
+        private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private final long start = System.nanoTime();
+        private final long heapBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        private final long offHeapBytes = Pointer.totalBytes();
+        private final long gcCount = gcCount();
+        private final long gcMillis = gcMillis();
+
+        void report(String setting, long items, String unit, long[] latencies) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double heapMegabytes = (threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - heapBytes) / 1e6;
+            double offHeapMegabytes = (Pointer.totalBytes() - offHeapBytes) / 1e6;
+            LoggingUtils.print(MessageFormat.format("{0}: {1,number,#.#} {2}/sec, heap {3,number,#.#} MB/sec, off-heap growth {4,number,#.#} MB, GC {5} collections {6} ms",
+                    setting, items / seconds, unit, heapMegabytes / seconds, offHeapMegabytes, gcCount() - gcCount, gcMillis() - gcMillis));
+            if (latencies != null) {
+                long[] sorted = latencies.clone();
+                Arrays.sort(sorted);
+                LoggingUtils.print(MessageFormat.format("{0}: batch latency p50 {1,number,#.##} ms, p99 {2,number,#.##} ms, max {3,number,#.##} ms",
+                        setting, sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.99)] / 1e6, sorted[sorted.length - 1] / 1e6));
+            }
+        }
+
+        private static long gcCount() {
+            long count = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) count += gc.getCollectionCount();
+            return count;
+        }
+
+        private static long gcMillis() {
+            long millis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) millis += gc.getCollectionTime();
+            return millis;
+        }
+    }
+}
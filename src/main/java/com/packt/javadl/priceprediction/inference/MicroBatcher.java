@@ -0,0 +1,212 @@
+package com.packt.javadl.priceprediction.inference;
+
+import com.packt.javadl.priceprediction.neuralnetwork.ModelMetadata;
+import com.packt.javadl.priceprediction.utils.LatencyStats;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Combine concurrent prediction requests into batched forward passes.
+ * <p>
+ * A batch is closed when it holds maxBatchSize windows or maxDelay after its first request, whichever comes first.
+ * Its windows are grouped by model and every group is scored with a single output call on the worker pool,
+ * a malformed window only fails its own request.
+ */
+public class MicroBatcher implements AutoCloseable {
+
+    private static class Request {
+        private final ModelKey key;
+        private final double[][] window;
+        private final CompletableFuture<double[]> result = new CompletableFuture<>();
+        private final long startNanos = System.nanoTime();
+
+        Request(ModelKey key, double[][] window) {
+            this.key = key;
+            this.window = window;
+        }
+    }
+
+    private final ModelRegistry registry;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService workers;
+    private final Thread dispatcher;
+
+    /**
+     * guards running and the enqueue of submit, no request is queued once close has started
+     */
+    private final Object lock = new Object();
+    private volatile boolean running = true;
+
+    private final LatencyStats latencies = new LatencyStats(10_000);
+    private final AtomicLong forwardPasses = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public MicroBatcher(ModelRegistry registry, int maxBatchSize, long maxDelay, TimeUnit unit, int workerThreads) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        this.registry = registry;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.workers = Executors.newFixedThreadPool(workerThreads);
+        dispatcher = new Thread(this::dispatch, "micro-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * The registry lookup is not counted again here, the caller counted it when it read the exampleLength of the model
+     * with {@link ModelRegistry#getMetadata}.
+     *
+     * @param window not normalized bars, exampleLength of them
+     * @return denormalized prediction of the next bar, one value per model output
+     */
+    public CompletableFuture<double[]> submit(ModelKey key, double[][] window) {
+        Request request = new Request(key, window);
+        synchronized (lock) {
+            if (running) {
+                queue.add(request);
+                return request.result;
+            }
+        }
+        request.result.completeExceptionally(new IllegalStateException("Micro-batcher is closed"));
+        return request.result;
+    }
+
+    private void dispatch() {
+        List<Request> batch = new ArrayList<>();
+        while (running) {
+            try {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = first.startNanos + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    Request request = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (request == null) break;
+                    batch.add(request);
+                }
+            } catch (InterruptedException e) {
+                // requests already taken are failed by close with the queued ones
+                queue.addAll(batch);
+                break;
+            }
+
+            Map<ModelKey, List<Request>> groups = new LinkedHashMap<>();
+            for (Request request : batch) {
+                groups.computeIfAbsent(request.key, key -> new ArrayList<>()).add(request);
+            }
+            for (Map.Entry<ModelKey, List<Request>> group : groups.entrySet()) {
+                try {
+                    workers.execute(() -> score(group.getKey(), group.getValue()));
+                } catch (RejectedExecutionException e) {
+                    // close gave up waiting for the dispatcher
+                    for (Request request : group.getValue()) request.result.completeExceptionally(e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Windows are checked against the model before the forward pass, the malformed ones are left out of it
+     */
+    private void score(ModelKey key, List<Request> requests) {
+        List<Request> scored = new ArrayList<>(requests.size());
+        Map<Request, IllegalArgumentException> rejected = new LinkedHashMap<>();
+        double[][] predictions;
+        try {
+            predictions = registry.use(key, model -> {
+                ModelMetadata metadata = model.getMetadata();
+                List<double[][]> windows = new ArrayList<>(requests.size());
+                for (Request request : requests) {
+                    try {
+                        WindowEncoder.checkWindow(request.window, metadata.getExampleLength());
+                        scored.add(request);
+                        windows.add(request.window);
+                    } catch (IllegalArgumentException e) {
+                        rejected.put(request, e);
+                    }
+                }
+                if (windows.isEmpty()) return new double[0][];
+                INDArray output = model.output(WindowEncoder.encode(windows, metadata));
+                return WindowEncoder.decodeLastStep(output, metadata);
+            }, false);
+        } catch (Exception e) {
+            failures.addAndGet(requests.size());
+            for (Request request : requests) request.result.completeExceptionally(e);
+            return;
+        }
+        failures.addAndGet(rejected.size());
+        for (Map.Entry<Request, IllegalArgumentException> entry : rejected.entrySet()) {
+            entry.getKey().result.completeExceptionally(entry.getValue());
+        }
+        if (scored.isEmpty()) return;
+        forwardPasses.incrementAndGet();
+        for (int i = 0; i < scored.size(); i++) {
+            Request request = scored.get(i);
+            latencies.record(System.nanoTime() - request.startNanos);
+            request.result.complete(predictions[i]);
+        }
+    }
+
+    public LatencyStats getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * @return mean number of windows per forward pass
+     */
+    public double averageBatchSize() {
+        long passes = forwardPasses.get();
+        return passes == 0 ? 0 : (double) latencies.getCount() / passes;
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public void printStats() {
+        LoggingUtils.print(MessageFormat.format("Predictions: {0}, {1} forward passes, {2,number,#.##} windows per pass, {3} failures",
+                latencies, forwardPasses.get(), averageBatchSize(), failures.get()));
+    }
+
+    /**
+     * Stop batching, the groups already handed to the workers are scored, the requests still queued are failed
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            running = false;
+        }
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+
+        // the dispatcher is stopped and submit no longer queues, nothing is added after this drain
+        List<Request> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        for (Request request : leftovers) {
+            request.result.completeExceptionally(new IllegalStateException("Micro-batcher is closed"));
+        }
+    }
+}
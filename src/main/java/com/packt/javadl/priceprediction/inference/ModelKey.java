@@ -0,0 +1,31 @@
+package com.packt.javadl.priceprediction.inference;
+
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Identity of a model in the {@link ModelRegistry}
+ */
+@Data
+@AllArgsConstructor
+public class ModelKey {
+
+    /**
+     * version resolved to the highest saved version when the model is loaded
+     */
+    public static final int LATEST = 0;
+
+    private String symbol;
+    private PriceCategory category;
+    private int version;
+
+    public static ModelKey latest(String symbol, PriceCategory category) {
+        return new ModelKey(symbol, category, LATEST);
+    }
+
+    @Override
+    public String toString() {
+        return symbol + "/" + category + "/" + (version == LATEST ? "latest" : "v" + version);
+    }
+}
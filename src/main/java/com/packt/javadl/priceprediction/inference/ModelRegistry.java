@@ -0,0 +1,311 @@
+package com.packt.javadl.priceprediction.inference;
+
+import com.packt.javadl.priceprediction.neuralnetwork.ModelArtifact;
+import com.packt.javadl.priceprediction.neuralnetwork.ModelMetadata;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Long-lived cache of the saved models, keyed by (symbol, category, version).
+ * <p>
+ * A model is restored from its zip on first use only, concurrent first uses wait for the same load.
+ * The least recently used models are evicted when there are more than maxModels of them or when their parameters
+ * take more than maxBytes. A network is not thread safe, {@link #use} runs the calls on one model one at a time,
+ * calls on different models run concurrently. A call still running on an evicted model completes normally.
+ */
+public class ModelRegistry {
+
+    /**
+     * Called when a model leaves the registry
+     */
+    @FunctionalInterface
+    public interface RemovalListener {
+        /**
+         * @param replaced true when the model was invalidated or its file replaced, false when it was only evicted
+         */
+        void onModelRemoved(ModelKey key, boolean replaced);
+    }
+
+    @FunctionalInterface
+    public interface ModelFunction<R> {
+        R apply(ModelArtifact model);
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Stats {
+        private long hits;
+        private long misses;
+        private long evictions;
+        private long loadFailures;
+        private int models;
+        private long bytes;
+        private double averageLoadMillis;
+        private double maxLoadMillis;
+
+        public double hitRate() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+    }
+
+    private static class Entry {
+        private final ModelKey key;
+        private final CompletableFuture<ModelArtifact> model = new CompletableFuture<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private File file;
+        private long lastModified;
+        private long bytes;
+
+        Entry(ModelKey key) {
+            this.key = key;
+        }
+    }
+
+    private final int maxModels;
+    private final long maxBytes;
+    private final Function<ModelKey, File> locator;
+
+    /**
+     * in least recently used first order, guarded by this
+     */
+    private final LinkedHashMap<ModelKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final List<RemovalListener> listeners = new CopyOnWriteArrayList<>();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long loadFailures;
+    private long loads;
+    private long loadNanos;
+    private long maxLoadNanos;
+
+    public ModelRegistry(int maxModels, long maxBytes) {
+        this(maxModels, maxBytes, ModelRegistry::defaultLocation);
+    }
+
+    public ModelRegistry(int maxModels, long maxBytes, Function<ModelKey, File> locator) {
+        this.maxModels = maxModels;
+        this.maxBytes = maxBytes;
+        this.locator = locator;
+    }
+
+    /**
+     * The requested version in data/models/[symbol], the highest one for LATEST (trainings and fine-tunes both write the
+     * next version), then the unversioned data/models/[symbol]/StockPriceLSTM_[category].zip of older trainings,
+     * then data/StockPriceLSTM_[category].zip
+     */
+    public static File defaultLocation(ModelKey key) {
+        String category = String.valueOf(key.getCategory());
+        int version = key.getVersion() == ModelKey.LATEST ? ModelArtifact.latestVersion(key.getSymbol(), category) : key.getVersion();
+        if (version > 0) {
+            File versionFile = ModelArtifact.versionFile(key.getSymbol(), category, version);
+            if (versionFile.exists()) return versionFile;
+        }
+        File symbolFile = ModelArtifact.symbolFile(key.getSymbol(), category);
+        return symbolFile.exists() ? symbolFile : ModelArtifact.defaultFile(category);
+    }
+
+    public void addRemovalListener(RemovalListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Run the function on the model, loading it first if needed, no other call uses the model meanwhile
+     */
+    public <R> R use(ModelKey key, ModelFunction<R> function) throws IOException {
+        return use(key, function, true);
+    }
+
+    /**
+     * @param counted false when the caller already counted the lookup, e.g. with {@link #getMetadata}
+     */
+    <R> R use(ModelKey key, ModelFunction<R> function, boolean counted) throws IOException {
+        Entry entry = entry(key, counted);
+        ModelArtifact model = await(entry);
+        entry.lock.lock();
+        try {
+            return function.apply(model);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * Counted as a hit or a miss, load the model first if needed
+     */
+    public ModelMetadata getMetadata(ModelKey key) throws IOException {
+        return await(entry(key, true)).getMetadata();
+    }
+
+    private Entry entry(ModelKey key, boolean counted) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null) {
+                if (counted) hits++;
+                return entry;
+            }
+            if (counted) misses++;
+            entry = new Entry(key);
+            entries.put(key, entry);
+        }
+        load(entry);
+        return entry;
+    }
+
+    /**
+     * Restore the model outside of the registry lock, other models stay usable meanwhile.
+     * Whatever the loader throws, Errors included, fails the waiting uses and removes the entry so the next use retries.
+     */
+    private void load(Entry entry) {
+        long start = System.nanoTime();
+        ModelArtifact model;
+        long elapsed;
+        List<ModelKey> evicted;
+        try {
+            entry.file = locator.apply(entry.key);
+            entry.lastModified = entry.file.lastModified();
+            model = ModelArtifact.restore(entry.file, false);
+            ModelMetadata metadata = model.getMetadata();
+            if (!metadata.getSymbol().equals(entry.key.getSymbol())
+                    || metadata.getCategory() != entry.key.getCategory()
+                    || (entry.key.getVersion() != ModelKey.LATEST && metadata.getVersion() != entry.key.getVersion())) {
+                throw new IOException(MessageFormat.format("{0} holds {1}/{2}/v{3}, not {4}",
+                        entry.file, metadata.getSymbol(), metadata.getCategory(), metadata.getVersion(), entry.key));
+            }
+            entry.bytes = model.numParams() * (long) Nd4j.sizeOfDataType();
+            elapsed = System.nanoTime() - start;
+            synchronized (this) {
+                loads++;
+                loadNanos += elapsed;
+                maxLoadNanos = Math.max(maxLoadNanos, elapsed);
+                bytes += entry.bytes;
+                evicted = evict(entry);
+            }
+        } catch (Throwable e) {
+            synchronized (this) {
+                loadFailures++;
+                entries.remove(entry.key, entry);
+            }
+            entry.model.completeExceptionally(e);
+            return;
+        }
+        entry.model.complete(model);
+        LoggingUtils.print(MessageFormat.format("Loaded model {0} from {1} in {2} ms, {3} bytes",
+                entry.key, entry.file, elapsed / 1_000_000, entry.bytes));
+        notifyRemoved(evicted, false);
+    }
+
+    private static ModelArtifact await(Entry entry) throws IOException {
+        try {
+            return entry.model.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(MessageFormat.format("Interrupted while loading {0}", entry.key), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(MessageFormat.format("Model {0} can not be loaded", entry.key), e.getCause());
+        }
+    }
+
+    /**
+     * Remove the least recently used loaded models until the limits are met, the just loaded one is kept
+     */
+    private List<ModelKey> evict(Entry loaded) {
+        List<ModelKey> evicted = new ArrayList<>();
+        Iterator<Map.Entry<ModelKey, Entry>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxModels || bytes > maxBytes) && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry == loaded || !entry.model.isDone()) continue;
+            iterator.remove();
+            bytes -= entry.bytes;
+            evictions++;
+            evicted.add(entry.key);
+        }
+        return evicted;
+    }
+
+    /**
+     * Drop the model, the next use loads it again
+     */
+    public void invalidate(ModelKey key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null) remove(entry);
+    }
+
+    /**
+     * @return false when the entry is still loading or was already removed
+     */
+    private boolean remove(Entry entry) {
+        synchronized (this) {
+            if (!entry.model.isDone() || !entries.remove(entry.key, entry)) return false;
+            bytes -= entry.bytes;
+        }
+        notifyRemoved(List.of(entry.key), true);
+        return true;
+    }
+
+    /**
+     * Drop the models whose file was rewritten or, for LATEST keys, superseded by a newer version
+     *
+     * @return the dropped models
+     */
+    public List<ModelKey> refresh() {
+        List<Entry> loaded = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                if (entry.model.isDone()) loaded.add(entry);
+            }
+        }
+        List<ModelKey> replaced = new ArrayList<>();
+        for (Entry entry : loaded) {
+            File file = locator.apply(entry.key);
+            if ((!file.equals(entry.file) || file.lastModified() != entry.lastModified) && remove(entry)) {
+                replaced.add(entry.key);
+                LoggingUtils.print(MessageFormat.format("Model {0} replaced by {1}", entry.key, file));
+            }
+        }
+        return replaced;
+    }
+
+    private void notifyRemoved(List<ModelKey> keys, boolean replaced) {
+        for (ModelKey key : keys) {
+            for (RemovalListener listener : listeners) {
+                listener.onModelRemoved(key, replaced);
+            }
+        }
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(hits, misses, evictions, loadFailures, entries.size(), bytes,
+                loads == 0 ? 0 : loadNanos / 1e6 / loads, maxLoadNanos / 1e6);
+    }
+
+    public void printStats() {
+        Stats stats = getStats();
+        LoggingUtils.print(MessageFormat.format("Model registry: {0} models, {1} bytes, hit rate {2,number,#.###} ({3} hits, {4} misses), {5} evictions, {6} load failures, load {7,number,#.#} ms average, {8,number,#.#} ms max",
+                stats.getModels(), stats.getBytes(), stats.hitRate(), stats.getHits(), stats.getMisses(), stats.getEvictions(),
+                stats.getLoadFailures(), stats.getAverageLoadMillis(), stats.getMaxLoadMillis()));
+    }
+}
@@ -0,0 +1,80 @@
+package com.packt.javadl.priceprediction.inference;
+
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+/**
+ * N steps ahead forecast: the network is primed once on the window with rnnTimeStep, then rolled forward one
+ * time step per horizon step, feeding back the predicted bar. A horizon of N costs exampleLength + N - 1 time steps.
+ * <p>
+ * For a PriceCategory.ALL network the predicted bar is the whole output. For a single category network the last
+ * bar is carried forward with the predicted category replaced.
+ * <p>
+ * The recurrent state of the network is used, so a forecaster must not be shared between threads.
+ */
+public class MultiStepForecaster {
+
+    private final MultiLayerNetwork net;
+    private final PriceCategory category;
+    private final double[] minArray;
+    private final double[] maxArray;
+
+    public MultiStepForecaster(MultiLayerNetwork net, PriceCategory category, double[] minArray, double[] maxArray) {
+        this.net = net;
+        this.category = category;
+        this.minArray = minArray;
+        this.maxArray = maxArray;
+    }
+
+    /**
+     * @param windows normalized windows, [windows, VECTOR_SIZE, exampleLength]
+     * @param horizon number of bars to forecast
+     * @return denormalized forecasts, [window][step][output]
+     */
+    public double[][][] forecast(INDArray windows, int horizon) {
+        int count = (int) windows.size(0);
+        int exampleLength = (int) windows.size(2);
+        double[][][] forecasts = new double[count][horizon][];
+
+        net.rnnClearPreviousState();
+        try {
+            // prime on the whole window, keep the prediction of the last time step
+            INDArray output = net.rnnTimeStep(windows)
+                    .get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(exampleLength - 1));
+            INDArray lastBar = windows.get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(exampleLength - 1)).dup();
+
+            for (int step = 0; step < horizon; step++) {
+                collect(output, forecasts, step);
+                if (step == horizon - 1) break;
+
+                // feed back the predicted bar, a 2d input is a single time step
+                INDArray nextBar;
+                if (category == PriceCategory.ALL) {
+                    nextBar = output.dup();
+                } else {
+                    nextBar = lastBar;
+                    nextBar.putColumn(category.featureIndex, output.getColumn(0));
+                }
+                output = net.rnnTimeStep(nextBar);
+                lastBar = nextBar;
+            }
+        } finally {
+            net.rnnClearPreviousState();
+        }
+        return forecasts;
+    }
+
+    private void collect(INDArray output, double[][][] forecasts, int step) {
+        int outputs = (int) output.size(1);
+        for (int i = 0; i < forecasts.length; i++) {
+            double[] values = new double[outputs];
+            for (int n = 0; n < outputs; n++) {
+                int featureIndex = category == PriceCategory.ALL ? n : category.featureIndex;
+                values[n] = output.getDouble(i, n) * (maxArray[featureIndex] - minArray[featureIndex]) + minArray[featureIndex];
+            }
+            forecasts[i][step] = values;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.packt.javadl.priceprediction.inference;
+
+import com.packt.javadl.priceprediction.neuralnetwork.ModelMetadata;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Bounded cache of the predictions of identical windows, keyed by symbol, category, model version and the
+ * normalized window contents.
+ * <p>
+ * Entries expire ttl after they were stored, the least recently used ones are evicted above maxEntries.
+ * When registered on a {@link ModelRegistry} the entries of a replaced model are dropped.
+ */
+public class PredictionCache implements ModelRegistry.RemovalListener {
+
+    /**
+     * The normalized window is kept in the key, a hash collision can never return the prediction of another window
+     */
+    public static final class WindowKey {
+        private final String symbol;
+        private final PriceCategory category;
+        private final int version;
+        private final double[] values;
+        private final int hash;
+
+        private WindowKey(String symbol, PriceCategory category, int version, double[] values) {
+            this.symbol = symbol;
+            this.category = category;
+            this.version = version;
+            this.values = values;
+            this.hash = 31 * (31 * (31 * symbol.hashCode() + category.hashCode()) + version) + Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof WindowKey)) return false;
+            WindowKey key = (WindowKey) other;
+            return hash == key.hash && version == key.version && category == key.category
+                    && symbol.equals(key.symbol) && Arrays.equals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Entry {
+        private final double[] prediction;
+        private final long storedNanos = System.nanoTime();
+
+        Entry(double[] prediction) {
+            this.prediction = prediction;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    /**
+     * in least recently used first order, guarded by this
+     */
+    private final LinkedHashMap<WindowKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    public PredictionCache(int maxEntries, long ttl, TimeUnit unit) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * @param window not normalized bars, normalized with the model metadata
+     */
+    public static WindowKey key(ModelKey model, ModelMetadata metadata, double[][] window) {
+        double[] values = new double[window.length * VECTOR_SIZE];
+        int i = 0;
+        for (double[] bar : window) {
+            for (int k = 0; k < VECTOR_SIZE; k++) {
+                values[i++] = metadata.normalize(bar[k], k);
+            }
+        }
+        return new WindowKey(model.getSymbol(), model.getCategory(), metadata.getVersion(), values);
+    }
+
+    /**
+     * @return a copy of the cached prediction, null when absent or expired
+     */
+    public synchronized double[] get(WindowKey key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.nanoTime() - entry.storedNanos > ttlNanos) {
+            entries.remove(key);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.prediction.clone();
+    }
+
+    public synchronized void put(WindowKey key, double[] prediction) {
+        entries.put(key, new Entry(prediction.clone()));
+        Iterator<WindowKey> iterator = entries.keySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drop every version of the model of this symbol and category
+     */
+    public synchronized void invalidate(String symbol, PriceCategory category) {
+        Iterator<WindowKey> iterator = entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            WindowKey key = iterator.next();
+            if (key.category == category && key.symbol.equals(symbol)) {
+                iterator.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Evicted models keep their predictions, they are still valid for the same version
+     */
+    @Override
+    public void onModelRemoved(ModelKey key, boolean replaced) {
+        if (replaced) invalidate(key.getSymbol(), key.getCategory());
+    }
+
+    public synchronized double hitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void printStats() {
+        LoggingUtils.print(MessageFormat.format("Prediction cache: {0} entries, hit rate {1,number,#.###} ({2} hits, {3} misses), {4} evictions, {5} expirations, {6} invalidations",
+                entries.size(), hitRate(), hits, misses, evictions, expirations, invalidations));
+    }
+}
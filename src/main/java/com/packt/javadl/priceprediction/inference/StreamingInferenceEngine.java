@@ -0,0 +1,231 @@
+package com.packt.javadl.priceprediction.inference;
+
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.api.layers.RecurrentLayer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Feed one bar at a time per symbol: the recurrent state of every symbol is kept between bars and the network
+ * is advanced by a single time step with rnnTimeStep, so a bar costs one time step instead of exampleLength.
+ * <p>
+ * The network is cloned into replicas, every symbol always uses the same replica and bars of symbols on
+ * different replicas are processed concurrently. The state of a symbol stays in its replica until another symbol
+ * uses it, consecutive bars of the same symbol are not copied in and out of the network.
+ */
+public class StreamingInferenceEngine {
+
+    /**
+     * Copy of the recurrent state of a symbol
+     */
+    public static class Snapshot {
+        private final Map<Integer, Map<String, INDArray>> state;
+        private final long bars;
+
+        private Snapshot(Map<Integer, Map<String, INDArray>> state, long bars) {
+            this.state = state;
+            this.bars = bars;
+        }
+
+        public long getBars() {
+            return bars;
+        }
+    }
+
+    private static class SymbolState {
+        final double[] minArray;
+        final double[] maxArray;
+        final Replica replica;
+
+        /**
+         * out of date while the symbol owns its replica, the live state is in the network then
+         */
+        Map<Integer, Map<String, INDArray>> state = new HashMap<>();
+        long bars;
+
+        SymbolState(double[] minArray, double[] maxArray, Replica replica) {
+            this.minArray = minArray.clone();
+            this.maxArray = maxArray.clone();
+            this.replica = replica;
+        }
+    }
+
+    private static class Replica {
+        final MultiLayerNetwork net;
+        final double[] input = new double[VECTOR_SIZE];
+
+        /**
+         * symbol whose state is in the network, null when none
+         */
+        SymbolState owner;
+
+        Replica(MultiLayerNetwork net) {
+            this.net = net;
+        }
+    }
+
+    private final PriceCategory category;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final int[] recurrentLayers;
+    private final Map<String, SymbolState> symbols = new ConcurrentHashMap<>();
+
+    public StreamingInferenceEngine(MultiLayerNetwork net, PriceCategory category, int replicasCount) {
+        this.category = category;
+        replicas.add(new Replica(net));
+        for (int i = 1; i < replicasCount; i++) {
+            replicas.add(new Replica(net.clone()));
+        }
+
+        List<Integer> recurrent = new ArrayList<>();
+        Layer[] layers = net.getLayers();
+        for (int i = 0; i < layers.length; i++) {
+            if (layers[i] instanceof RecurrentLayer) recurrent.add(i);
+        }
+        recurrentLayers = recurrent.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Register a symbol with the min / max its model was trained with, its state starts empty
+     */
+    public void registerSymbol(String symbol, double[] minArray, double[] maxArray) {
+        Replica replica = replicas.get(Math.floorMod(symbol.hashCode(), replicas.size()));
+        symbols.put(symbol, new SymbolState(minArray, maxArray, replica));
+    }
+
+    public PriceCategory getCategory() {
+        return category;
+    }
+
+    /**
+     * Advance the state of the symbol with a new bar
+     *
+     * @param features not normalized bar, VECTOR_SIZE features
+     * @return denormalized prediction of the next bar, one value per output
+     */
+    public double[] onBar(String symbol, double[] features) {
+        SymbolState symbolState = getSymbolState(symbol);
+        Replica replica = symbolState.replica;
+        synchronized (replica) {
+            for (int k = 0; k < VECTOR_SIZE; k++) {
+                replica.input[k] = (features[k] - symbolState.minArray[k]) / (symbolState.maxArray[k] - symbolState.minArray[k]);
+            }
+            MultiLayerNetwork net = replica.net;
+            acquire(replica, symbolState);
+            // a 2d input is a single time step
+            INDArray output = net.rnnTimeStep(Nd4j.create(replica.input, new int[]{1, VECTOR_SIZE}));
+            symbolState.bars++;
+
+            double[] prediction = new double[(int) output.length()];
+            for (int n = 0; n < prediction.length; n++) {
+                int featureIndex = category == PriceCategory.ALL ? n : category.featureIndex;
+                prediction[n] = output.getDouble(n) * (symbolState.maxArray[featureIndex] - symbolState.minArray[featureIndex]) + symbolState.minArray[featureIndex];
+            }
+            return prediction;
+        }
+    }
+
+    public Snapshot snapshot(String symbol) {
+        SymbolState symbolState = getSymbolState(symbol);
+        synchronized (symbolState.replica) {
+            if (symbolState.replica.owner == symbolState) symbolState.state = captureState(symbolState.replica.net);
+            return new Snapshot(copy(symbolState.state), symbolState.bars);
+        }
+    }
+
+    public void restore(String symbol, Snapshot snapshot) {
+        SymbolState symbolState = getSymbolState(symbol);
+        synchronized (symbolState.replica) {
+            release(symbolState);
+            symbolState.state = copy(snapshot.state);
+            symbolState.bars = snapshot.bars;
+        }
+    }
+
+    /**
+     * Forget the bars already seen by the symbol
+     */
+    public void reset(String symbol) {
+        SymbolState symbolState = getSymbolState(symbol);
+        synchronized (symbolState.replica) {
+            release(symbolState);
+            symbolState.state = new HashMap<>();
+            symbolState.bars = 0;
+        }
+    }
+
+    public long getBars(String symbol) {
+        return getSymbolState(symbol).bars;
+    }
+
+    private SymbolState getSymbolState(String symbol) {
+        SymbolState symbolState = symbols.get(symbol);
+        if (symbolState == null) {
+            throw new IllegalArgumentException(MessageFormat.format("Symbol {0} is not registered", symbol));
+        }
+        return symbolState;
+    }
+
+    /**
+     * Put the state of the symbol in its replica, saving the state of the previous owner first
+     */
+    private void acquire(Replica replica, SymbolState symbolState) {
+        if (replica.owner == symbolState) return;
+        if (replica.owner != null) replica.owner.state = captureState(replica.net);
+        restoreState(replica.net, symbolState.state);
+        replica.owner = symbolState;
+    }
+
+    /**
+     * The state in the network is dropped, the next bar of the symbol restores its state field
+     */
+    private static void release(SymbolState symbolState) {
+        if (symbolState.replica.owner == symbolState) symbolState.replica.owner = null;
+    }
+
+    private void restoreState(MultiLayerNetwork net, Map<Integer, Map<String, INDArray>> state) {
+        net.rnnClearPreviousState();
+        for (Map.Entry<Integer, Map<String, INDArray>> entry : state.entrySet()) {
+            net.rnnSetPreviousState(entry.getKey(), new HashMap<>(entry.getValue()));
+        }
+    }
+
+    /**
+     * state arrays are copied, they must survive the next symbol using the replica
+     */
+    private Map<Integer, Map<String, INDArray>> captureState(MultiLayerNetwork net) {
+        Map<Integer, Map<String, INDArray>> state = new HashMap<>();
+        for (int layer : recurrentLayers) {
+            Map<String, INDArray> layerState = net.rnnGetPreviousState(layer);
+            if (layerState == null || layerState.isEmpty()) continue;
+            Map<String, INDArray> copy = new HashMap<>();
+            for (Map.Entry<String, INDArray> entry : layerState.entrySet()) {
+                copy.put(entry.getKey(), entry.getValue().dup());
+            }
+            state.put(layer, copy);
+        }
+        return state;
+    }
+
+    private static Map<Integer, Map<String, INDArray>> copy(Map<Integer, Map<String, INDArray>> state) {
+        Map<Integer, Map<String, INDArray>> copy = new HashMap<>();
+        for (Map.Entry<Integer, Map<String, INDArray>> entry : state.entrySet()) {
+            Map<String, INDArray> layerState = new HashMap<>();
+            for (Map.Entry<String, INDArray> value : entry.getValue().entrySet()) {
+                layerState.put(value.getKey(), value.getValue().dup());
+            }
+            copy.put(entry.getKey(), layerState);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,279 @@
+package com.packt.javadl.priceprediction.inference;
+
+import com.packt.javadl.priceprediction.neuralnetwork.ModelMetadata;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.representation.TestCase;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import com.packt.javadl.priceprediction.utils.TestCases;
+import lombok.Data;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Score the labelled {@link TestCases} of every currency against the saved models.
+ * <p>
+ * The cases of a currency are split in batches of batchSize, every batch is scored on its own virtual thread
+ * (a fixed pool of maxConcurrentCalls platform threads before Java 21). The models are shared through the
+ * {@link ModelRegistry}, at most maxConcurrentCalls forward passes run at the same time.
+ * <p>
+ * The predicted decision is the highest of the BUY, SELL, NO_DECISION outputs, the predicted execution the highest
+ * of the EXECUTE, NO_EXECUTE outputs. They come from the ALL model of the currency, or from one model per flag.
+ */
+public class TestCaseScorer {
+
+    public static final PriceCategory[] DECISIONS = {PriceCategory.BUY, PriceCategory.SELL, PriceCategory.NO_DECISION};
+    public static final PriceCategory[] EXECUTIONS = {PriceCategory.EXECUTE, PriceCategory.NO_EXECUTE};
+
+    /**
+     * Models scoring every flag at once, or one flag each
+     */
+    public static final List<PriceCategory> ALL_MODEL = List.of(PriceCategory.ALL);
+    public static final List<PriceCategory> FLAG_MODELS = List.of(PriceCategory.BUY, PriceCategory.SELL,
+            PriceCategory.NO_DECISION, PriceCategory.EXECUTE, PriceCategory.NO_EXECUTE);
+
+    @Data
+    public static class CurrencyScore {
+        private final String currency;
+
+        /**
+         * [expected][predicted], in DECISIONS and EXECUTIONS order
+         */
+        private final int[][] decisionConfusion = new int[DECISIONS.length][DECISIONS.length];
+        private final int[][] executeConfusion = new int[EXECUTIONS.length][EXECUTIONS.length];
+
+        private int cases;
+        private int bothHits;
+        private int failedCases;
+        private String error;
+
+        public double decisionAccuracy() {
+            return accuracy(decisionConfusion);
+        }
+
+        public double executeAccuracy() {
+            return accuracy(executeConfusion);
+        }
+
+        /**
+         * @return share of the cases with both the decision and the execution right
+         */
+        public double accuracy() {
+            return cases == 0 ? 0 : (double) bothHits / cases;
+        }
+
+        private double accuracy(int[][] confusion) {
+            int hits = 0;
+            for (int n = 0; n < confusion.length; n++) hits += confusion[n][n];
+            return cases == 0 ? 0 : (double) hits / cases;
+        }
+    }
+
+    private final ModelRegistry registry;
+    private final List<PriceCategory> modelCategories;
+    private final int batchSize;
+    private final int maxConcurrentCalls;
+    private final Semaphore forwardPasses;
+    private boolean virtualThreads;
+
+    public TestCaseScorer(ModelRegistry registry, List<PriceCategory> modelCategories, int batchSize, int maxConcurrentCalls) {
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be at least 1");
+        this.registry = registry;
+        this.modelCategories = modelCategories;
+        this.batchSize = batchSize;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.forwardPasses = new Semaphore(maxConcurrentCalls);
+    }
+
+    /**
+     * A test case is a single bar without prices: its weighted average price stands for open, high, low and close,
+     * and no decision nor execution is known yet
+     */
+    public static double[] bar(TestCase testCase) {
+        double[] features = new double[VECTOR_SIZE];
+        features[PriceCategory.OPEN.featureIndex] = testCase.getWap();
+        features[PriceCategory.HIGH.featureIndex] = testCase.getWap();
+        features[PriceCategory.LOW.featureIndex] = testCase.getWap();
+        features[PriceCategory.CLOSE.featureIndex] = testCase.getWap();
+        features[PriceCategory.VOLUME.featureIndex] = testCase.getVolume();
+        features[PriceCategory.WAP.featureIndex] = testCase.getWap();
+        features[PriceCategory.COUNT.featureIndex] = testCase.getCount();
+        features[PriceCategory.MINUTE.featureIndex] = testCase.getMinute();
+        features[PriceCategory.TESLA3.featureIndex] = testCase.getTesla3();
+        features[PriceCategory.TESLA6.featureIndex] = testCase.getTesla6();
+        features[PriceCategory.TESLA9.featureIndex] = testCase.getTesla9();
+        features[PriceCategory.NO_DECISION.featureIndex] = 1;
+        features[PriceCategory.NO_EXECUTE.featureIndex] = 1;
+        return features;
+    }
+
+    /**
+     * @return the bar of the test case repeated over a whole window
+     */
+    public static double[][] window(TestCase testCase, int exampleLength) {
+        double[][] window = new double[exampleLength][];
+        Arrays.fill(window, bar(testCase));
+        return window;
+    }
+
+    /**
+     * @return the score of every currency, in the given order
+     */
+    public Map<String, CurrencyScore> score(Collection<String> currencies) throws InterruptedException {
+        ExecutorService executor = newExecutor();
+        Map<String, CurrencyScore> scores = new LinkedHashMap<>();
+        try {
+            Map<String, List<Future<int[][]>>> batches = new LinkedHashMap<>();
+            for (String currency : currencies) {
+                List<TestCase> cases = TestCases.getTestCasesForCurrency(currency);
+                List<Future<int[][]>> futures = new ArrayList<>();
+                for (int from = 0; from < cases.size(); from += batchSize) {
+                    List<TestCase> batch = cases.subList(from, Math.min(from + batchSize, cases.size()));
+                    futures.add(executor.submit(() -> predict(currency, batch)));
+                }
+                batches.put(currency, futures);
+            }
+
+            for (Map.Entry<String, List<Future<int[][]>>> entry : batches.entrySet()) {
+                String currency = entry.getKey();
+                List<TestCase> cases = TestCases.getTestCasesForCurrency(currency);
+                CurrencyScore score = new CurrencyScore(currency);
+                int index = 0;
+                for (Future<int[][]> future : entry.getValue()) {
+                    int count = Math.min(batchSize, cases.size() - index);
+                    try {
+                        int[][] predicted = future.get();
+                        for (int i = 0; i < count; i++) {
+                            tally(score, cases.get(index + i), predicted[i]);
+                        }
+                    } catch (ExecutionException e) {
+                        score.setFailedCases(score.getFailedCases() + count);
+                        score.setError(String.valueOf(e.getCause().getMessage()));
+                    }
+                    index += count;
+                }
+                scores.put(currency, score);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return scores;
+    }
+
+    /**
+     * Virtual threads when the runtime has them, looked up by reflection as the project targets Java 17
+     */
+    private ExecutorService newExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            virtualThreads = true;
+            return executor;
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            virtualThreads = false;
+            return Executors.newFixedThreadPool(maxConcurrentCalls);
+        }
+    }
+
+    /**
+     * @return predicted decision and execution indexes of every case, [case][DECISIONS index, EXECUTIONS index]
+     */
+    private int[][] predict(String currency, List<TestCase> cases) throws Exception {
+        double[][] flags = new double[cases.size()][VECTOR_SIZE];
+        for (PriceCategory category : modelCategories) {
+            registry.use(ModelKey.latest(currency, category), model -> {
+                ModelMetadata metadata = model.getMetadata();
+                List<double[][]> windows = new ArrayList<>(cases.size());
+                for (TestCase testCase : cases) windows.add(window(testCase, metadata.getExampleLength()));
+                double[][] predictions;
+                forwardPasses.acquireUninterruptibly();
+                try {
+                    INDArray output = model.output(WindowEncoder.encode(windows, metadata));
+                    predictions = WindowEncoder.decodeLastStep(output, metadata);
+                } finally {
+                    // a virtual thread scores a single batch, its workspaces would never be reused
+                    if (virtualThreads) Nd4j.getWorkspaceManager().destroyAllWorkspacesForCurrentThread();
+                    forwardPasses.release();
+                }
+                for (int i = 0; i < predictions.length; i++) {
+                    for (int n = 0; n < predictions[i].length; n++) {
+                        flags[i][metadata.outputFeatureIndex(n)] = predictions[i][n];
+                    }
+                }
+                return null;
+            });
+        }
+
+        int[][] predicted = new int[cases.size()][];
+        for (int i = 0; i < cases.size(); i++) {
+            predicted[i] = new int[]{argMax(flags[i], DECISIONS), argMax(flags[i], EXECUTIONS)};
+        }
+        return predicted;
+    }
+
+    private static void tally(CurrencyScore score, TestCase testCase, int[] predicted) {
+        int decision = indexOf(DECISIONS, decisionCategory(testCase.getDecision()));
+        int execute = indexOf(EXECUTIONS, executeCategory(testCase.getExecute()));
+        score.getDecisionConfusion()[decision][predicted[0]]++;
+        score.getExecuteConfusion()[execute][predicted[1]]++;
+        score.setCases(score.getCases() + 1);
+        if (decision == predicted[0] && execute == predicted[1]) score.setBothHits(score.getBothHits() + 1);
+    }
+
+    private static PriceCategory decisionCategory(String decision) {
+        if (decision.equalsIgnoreCase("buy")) return PriceCategory.BUY;
+        if (decision.equalsIgnoreCase("sell")) return PriceCategory.SELL;
+        if (decision.equalsIgnoreCase("no")) return PriceCategory.NO_DECISION;
+        throw new IllegalArgumentException(MessageFormat.format("String Value {0} is not parsed Correctly", decision));
+    }
+
+    private static PriceCategory executeCategory(String execute) {
+        if (execute.equalsIgnoreCase("execute")) return PriceCategory.EXECUTE;
+        if (execute.equalsIgnoreCase("no")) return PriceCategory.NO_EXECUTE;
+        throw new IllegalArgumentException(MessageFormat.format("String Value {0} is not parsed Correctly", execute));
+    }
+
+    private static int argMax(double[] flags, PriceCategory[] categories) {
+        int best = 0;
+        for (int n = 1; n < categories.length; n++) {
+            if (flags[categories[n].featureIndex] > flags[categories[best].featureIndex]) best = n;
+        }
+        return best;
+    }
+
+    private static int indexOf(PriceCategory[] categories, PriceCategory category) {
+        for (int n = 0; n < categories.length; n++) {
+            if (categories[n] == category) return n;
+        }
+        throw new IllegalArgumentException(String.valueOf(category));
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public static void print(CurrencyScore score) {
+        if (score.getFailedCases() > 0) {
+            LoggingUtils.print(MessageFormat.format("{0}: {1} cases not scored, {2}", score.getCurrency(), score.getFailedCases(), score.getError()));
+        }
+        LoggingUtils.print(MessageFormat.format("{0}: {1} cases, accuracy {2,number,#.###}, decision {3,number,#.###}, execute {4,number,#.###}",
+                score.getCurrency(), score.getCases(), score.accuracy(), score.decisionAccuracy(), score.executeAccuracy()));
+        LoggingUtils.print(MessageFormat.format("{0} decision confusion, rows expected, columns predicted {1}: {2}",
+                score.getCurrency(), Arrays.toString(DECISIONS), Arrays.deepToString(score.getDecisionConfusion())));
+        LoggingUtils.print(MessageFormat.format("{0} execute confusion, rows expected, columns predicted {1}: {2}",
+                score.getCurrency(), Arrays.toString(EXECUTIONS), Arrays.deepToString(score.getExecuteConfusion())));
+    }
+}
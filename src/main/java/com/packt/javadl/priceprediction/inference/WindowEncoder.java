@@ -0,0 +1,68 @@
+package com.packt.javadl.priceprediction.inference;
+
+import com.packt.javadl.priceprediction.neuralnetwork.ModelMetadata;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.List;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Conversion between raw bars and the tensors of a saved model, using only its {@link ModelMetadata}
+ */
+public class WindowEncoder {
+
+    /**
+     * @param windows not normalized windows, [window][time step][feature], exampleLength time steps each
+     * @return normalized input, [windows, VECTOR_SIZE, exampleLength]
+     */
+    public static INDArray encode(List<double[][]> windows, ModelMetadata metadata) {
+        int count = windows.size();
+        int exampleLength = metadata.getExampleLength();
+        double[] values = new double[count * VECTOR_SIZE * exampleLength];
+        // 'f' order: [index, k, c] is at index + count * (k + features * c)
+        for (int index = 0; index < count; index++) {
+            double[][] window = windows.get(index);
+            checkWindow(window, exampleLength);
+            for (int c = 0; c < exampleLength; c++) {
+                int destination = index + count * VECTOR_SIZE * c;
+                for (int k = 0; k < VECTOR_SIZE; k++) {
+                    values[destination + count * k] = metadata.normalize(window[c][k], k);
+                }
+            }
+        }
+        return Nd4j.create(values, new int[]{count, VECTOR_SIZE, exampleLength}, 'f');
+    }
+
+    /**
+     * @throws IllegalArgumentException unless the window has exampleLength bars of VECTOR_SIZE features
+     */
+    public static void checkWindow(double[][] window, int exampleLength) {
+        if (window == null || window.length != exampleLength) {
+            throw new IllegalArgumentException("A window must have " + exampleLength + " bars, got " + (window == null ? 0 : window.length));
+        }
+        for (double[] bar : window) {
+            if (bar == null || bar.length != VECTOR_SIZE) {
+                throw new IllegalArgumentException("A bar must have " + VECTOR_SIZE + " features, got " + (bar == null ? 0 : bar.length));
+            }
+        }
+    }
+
+    /**
+     * @param output network output, [windows, outputs, exampleLength]
+     * @return denormalized prediction of the bar following each window, [window][output]
+     */
+    public static double[][] decodeLastStep(INDArray output, ModelMetadata metadata) {
+        int count = (int) output.size(0);
+        int outputs = (int) output.size(1);
+        int lastStep = (int) output.size(2) - 1;
+        double[][] predictions = new double[count][outputs];
+        for (int index = 0; index < count; index++) {
+            for (int n = 0; n < outputs; n++) {
+                predictions[index][n] = metadata.denormalize(output.getDouble(index, n, lastStep), metadata.outputFeatureIndex(n));
+            }
+        }
+        return predictions;
+    }
+}
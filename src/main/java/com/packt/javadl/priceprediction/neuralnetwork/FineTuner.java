@@ -0,0 +1,158 @@
+package com.packt.javadl.priceprediction.neuralnetwork;
+
+import com.packt.javadl.priceprediction.representation.FeatureStore;
+import com.packt.javadl.priceprediction.representation.StockDataSetIterator;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Continue the training of a saved model on the bars appended since its last training bar, instead of a full retrain.
+ * <p>
+ * Only the windows touching a new bar are used, plus a random replay sample of older windows so that the model does not
+ * forget them. The result is saved as the next version of the model.
+ */
+public class FineTuner {
+
+    private int epochs = 5;
+    private double replayRatio = 1.0;
+    private int batchSize = 128;
+    private double splitRatio = 1.0;
+    private long seed = 12345;
+
+    public FineTuner epochs(int epochs) {
+        this.epochs = epochs;
+        return this;
+    }
+
+    /**
+     * older windows replayed per new window, 0 to train on the new windows only
+     */
+    public FineTuner replayRatio(double replayRatio) {
+        this.replayRatio = replayRatio;
+        return this;
+    }
+
+    public FineTuner batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * share of the bars usable for training, the rest is kept to score the model before and after. 1 by default, the
+     * losses are then not compared: the new bars are the last ones and a hold-out would keep them out of training
+     */
+    public FineTuner splitRatio(double splitRatio) {
+        this.splitRatio = splitRatio;
+        return this;
+    }
+
+    public FineTuner seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param checkpoint model to start from, its metadata gives the last training bar
+     * @param store      every bar of the symbol, the checkpoint bars included
+     * @param output     file of the fine-tuned model, written atomically, a versionFile gives the version of the model
+     * @return fine-tuned metadata, null when there is no new bar to train on
+     */
+    public ModelMetadata fineTune(File checkpoint, FeatureStore store, File output) throws IOException {
+        ModelArtifact artifact = ModelArtifact.restore(checkpoint);
+        ModelMetadata metadata = artifact.getMetadata();
+        MultiLayerNetwork net = artifact.getNet();
+
+        StockDataSetIterator iterator = new StockDataSetIterator(store, batchSize, metadata.getExampleLength(), splitRatio, metadata.getCategory());
+        int firstNewRow = firstRowAfter(store, metadata.getLastTimestamp());
+        int exampleLength = metadata.getExampleLength();
+        // windows are the rows [start, start + exampleLength], the last row is the label
+        int windowCount = Math.max(0, iterator.getSplit() - exampleLength - 1);
+        int firstNewWindow = Math.max(0, firstNewRow - exampleLength);
+        if (firstNewWindow >= windowCount) {
+            LoggingUtils.print(MessageFormat.format("No new bar after {0,number,#} in {1}", metadata.getLastTimestamp(), store.getSymbol()));
+            return null;
+        }
+        if (!Arrays.equals(metadata.getMinArray(), iterator.getMinArray()) || !Arrays.equals(metadata.getMaxArray(), iterator.getMaxArray())) {
+            LoggingUtils.print("New bars are outside of the checkpoint min / max, the normalizer is updated");
+        }
+
+        int newWindows = windowCount - firstNewWindow;
+        int[] offsets = trainingOffsets(firstNewWindow, windowCount);
+        iterator.setShuffleSeed(seed);
+        iterator.setTrainingOffsets(offsets);
+        LoggingUtils.print(MessageFormat.format("Fine-tuning {0} version {1} on {2} new windows and {3} replayed windows",
+                store.getSymbol(), metadata.getVersion(), newWindows, offsets.length - newWindows));
+
+        ParallelTrainer evaluator = new ParallelTrainer();
+        boolean heldOut = iterator.getTestDataSet().size() > 0;
+        double lossBefore = heldOut ? evaluator.testLoss(net, iterator) : Double.NaN;
+        long start = System.nanoTime();
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            iterator.reset();
+            net.fit(iterator);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        if (heldOut) {
+            LoggingUtils.print(MessageFormat.format("Fine-tuned in {0} ms, test loss {1} -> {2}",
+                    elapsedMillis, lossBefore, evaluator.testLoss(net, iterator)));
+        } else {
+            LoggingUtils.print(MessageFormat.format("Fine-tuned in {0} ms, no held-out window to compare the losses, use a split ratio below 1 to keep some",
+                    elapsedMillis));
+        }
+
+        ModelMetadata tuned = ModelMetadata.fromIterator(iterator, ModelArtifact.fileVersion(output));
+        ModelArtifact.save(net, tuned, output);
+        return tuned;
+    }
+
+    /**
+     * @return the new windows [firstNewWindow, windowCount) followed by the replayed older ones
+     */
+    int[] trainingOffsets(int firstNewWindow, int windowCount) {
+        int newWindows = windowCount - firstNewWindow;
+        int[] replay = sample(firstNewWindow, (int) Math.min(firstNewWindow, Math.round(newWindows * replayRatio)), new Random(seed));
+        int[] offsets = new int[newWindows + replay.length];
+        for (int i = 0; i < newWindows; i++) {
+            offsets[i] = firstNewWindow + i;
+        }
+        System.arraycopy(replay, 0, offsets, newWindows, replay.length);
+        return offsets;
+    }
+
+    /**
+     * @return first row whose timestamp is after the given one, the rows are in time order
+     */
+    static int firstRowAfter(FeatureStore store, long timestamp) {
+        int low = 0;
+        int high = store.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (store.getTimestamp(middle) <= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * count distinct values of [0, bound), Floyd's algorithm
+     */
+    private static int[] sample(int bound, int count, Random random) {
+        Set<Integer> selected = new HashSet<>();
+        for (int j = bound - count; j < bound; j++) {
+            int value = random.nextInt(j + 1);
+            selected.add(selected.contains(value) ? j : value);
+        }
+        return selected.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,53 @@
+package com.packt.javadl.priceprediction.neuralnetwork;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.text.MessageFormat;
+import java.util.Locale;
+
+/**
+ * Shape and training parameters of {@link RecurrentNets#lstmNetwork(int, int, LstmHyperparameters)}
+ */
+@Data
+@AllArgsConstructor
+public class LstmHyperparameters {
+
+    private int lstmLayers;
+    private int lstmLayerSize;
+    private int denseLayers;
+    private int denseLayerSize;
+    private double dropoutRatio;
+    private double learningRate;
+
+    /**
+     * time series length of the training windows, also used as truncated BPTT length
+     */
+    private int exampleLength;
+
+    /**
+     * Stable text form, used as key of the search cache. The ratios are written with {@link Double#toString(double)}
+     * so that {@link #fromKey(String)} gives back the exact values that were trained.
+     */
+    public String key() {
+        return String.format(Locale.ROOT, "lstm=%dx%d,dense=%dx%d,dropout=%s,lr=%s,window=%d",
+                lstmLayers, lstmLayerSize, denseLayers, denseLayerSize,
+                Double.toString(dropoutRatio), Double.toString(learningRate), exampleLength);
+    }
+
+    public static LstmHyperparameters fromKey(String key) {
+        String[] parts = key.split(",");
+        if (parts.length != 5) {
+            throw new IllegalArgumentException(MessageFormat.format("Hyperparameters {0} are not parsed Correctly", key));
+        }
+        String[] lstm = value(parts[0]).split("x");
+        String[] dense = value(parts[1]).split("x");
+        return new LstmHyperparameters(Integer.parseInt(lstm[0]), Integer.parseInt(lstm[1]),
+                Integer.parseInt(dense[0]), Integer.parseInt(dense[1]),
+                Double.parseDouble(value(parts[2])), Double.parseDouble(value(parts[3])), Integer.parseInt(value(parts[4])));
+    }
+
+    private static String value(String part) {
+        return part.substring(part.indexOf('=') + 1);
+    }
+}
@@ -0,0 +1,214 @@
+package com.packt.javadl.priceprediction.neuralnetwork;
+
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import org.deeplearning4j.nn.api.Model;
+import org.deeplearning4j.nn.graph.ComputationGraph;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.util.ModelSerializer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.MessageFormat;
+import java.util.Enumeration;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Model zip (data/StockPriceLSTM_[category].zip) written by ModelSerializer with an extra entry holding the
+ * {@link ModelMetadata}, ModelSerializer ignores it so the zip can still be restored as a plain model.
+ * A MULTI model holds the multi-output ComputationGraph instead of a MultiLayerNetwork.
+ */
+public class ModelArtifact {
+
+    private static final String metadataEntry = "stockPriceMetadata.properties";
+
+    private final MultiLayerNetwork net;
+    private final ComputationGraph graph;
+    private final ModelMetadata metadata;
+
+    public ModelArtifact(MultiLayerNetwork net, ModelMetadata metadata) {
+        this.net = net;
+        this.graph = null;
+        this.metadata = metadata;
+    }
+
+    public ModelArtifact(ComputationGraph graph, ModelMetadata metadata) {
+        this.net = null;
+        this.graph = graph;
+        this.metadata = metadata;
+    }
+
+    /**
+     * @throws IllegalStateException for a multi-output graph, use {@link #output}
+     */
+    public MultiLayerNetwork getNet() {
+        if (net == null) {
+            throw new IllegalStateException(MessageFormat.format("{0} model of {1} is a multi-output graph",
+                    metadata.getCategory(), metadata.getSymbol()));
+        }
+        return net;
+    }
+
+    /**
+     * @return null for a MultiLayerNetwork
+     */
+    public ComputationGraph getGraph() {
+        return graph;
+    }
+
+    public long numParams() {
+        return net != null ? net.numParams() : graph.numParams();
+    }
+
+    /**
+     * @param input normalized windows, [windows, VECTOR_SIZE, exampleLength]
+     * @return [windows, metadata.outputs(), exampleLength], the outputs of a graph are joined in feature order
+     */
+    public INDArray output(INDArray input) {
+        if (net != null) return net.output(input, false);
+        return Nd4j.concat(1, graph.output(false, input));
+    }
+
+    public ModelMetadata getMetadata() {
+        return metadata;
+    }
+
+    public static File defaultFile(String category) {
+        return new File("data/StockPriceLSTM_".concat(category).concat(".zip"));
+    }
+
+    /**
+     * @return data/models/[symbol]/StockPriceLSTM_[category].zip
+     */
+    public static File symbolFile(String symbol, String category) {
+        return new File(new File("data/models", symbol), "StockPriceLSTM_".concat(category).concat(".zip"));
+    }
+
+    /**
+     * @return data/models/[symbol]/StockPriceLSTM_[category]_v[version].zip
+     */
+    public static File versionFile(String symbol, String category, int version) {
+        return new File(new File("data/models", symbol), versionPrefix(category) + version + ".zip");
+    }
+
+    /**
+     * @return highest version written to a versionFile, 0 when there is none
+     */
+    public static int latestVersion(String symbol, String category) {
+        String prefix = versionPrefix(category);
+        File[] files = new File("data/models", symbol).listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(".zip"));
+        int latest = 0;
+        if (files == null) return latest;
+        for (File file : files) {
+            String version = file.getName().substring(prefix.length(), file.getName().length() - ".zip".length());
+            try {
+                latest = Math.max(latest, Integer.parseInt(version));
+            } catch (NumberFormatException e) {
+                // not a version, eg a temporary file
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * @return version every training of the symbol writes to, above the fine-tuned ones so the latest training is served
+     */
+    public static int nextVersion(String symbol, String category) {
+        return latestVersion(symbol, category) + 1;
+    }
+
+    /**
+     * @return N of a versionFile, 1 for an unversioned model file
+     */
+    public static int fileVersion(File file) {
+        String name = file.getName();
+        int suffix = name.lastIndexOf("_v");
+        if (suffix < 0 || !name.endsWith(".zip")) return 1;
+        try {
+            return Integer.parseInt(name.substring(suffix + 2, name.length() - ".zip".length()));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    private static String versionPrefix(String category) {
+        return "StockPriceLSTM_".concat(category).concat("_v");
+    }
+
+    /**
+     * Write the model and its metadata to a temporary file then move it in place,
+     * readers never see a partially written artifact
+     */
+    public static void save(Model network, ModelMetadata metadata, File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(directory.toPath());
+        File model = File.createTempFile(file.getName(), ".model", directory);
+        File artifact = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            ModelSerializer.writeModel(network, model, true);
+            try (ZipFile zip = new ZipFile(model);
+                 ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(artifact.toPath()))) {
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (entry.getName().equals(metadataEntry)) continue;
+                    out.putNextEntry(new ZipEntry(entry.getName()));
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        in.transferTo(out);
+                    }
+                    out.closeEntry();
+                }
+                out.putNextEntry(new ZipEntry(metadataEntry));
+                metadata.toProperties().store(out, "Stock price prediction model metadata");
+                out.closeEntry();
+            }
+            Files.move(artifact.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(model.toPath());
+            Files.deleteIfExists(artifact.toPath());
+        }
+        LoggingUtils.print(MessageFormat.format("Saved model {0}, {1} version {2}", file, metadata.getCategory(), metadata.getVersion()));
+    }
+
+    public static ModelArtifact restore(File file) throws IOException {
+        return restore(file, true);
+    }
+
+    /**
+     * @param loadUpdater false for inference only, the updater state is as large as the parameters
+     */
+    public static ModelArtifact restore(File file, boolean loadUpdater) throws IOException {
+        ModelMetadata metadata = readMetadata(file);
+        if (metadata == null) {
+            throw new IOException(MessageFormat.format("{0} has no stock price metadata, it was saved without its normalizer: retrain it with RunTraining", file));
+        }
+        metadata.checkFeatureLayout();
+        if (metadata.getCategory() == PriceCategory.MULTI) {
+            return new ModelArtifact(ModelSerializer.restoreComputationGraph(file, loadUpdater), metadata);
+        }
+        return new ModelArtifact(ModelSerializer.restoreMultiLayerNetwork(file, loadUpdater), metadata);
+    }
+
+    /**
+     * @return null for a model saved without metadata
+     */
+    public static ModelMetadata readMetadata(File file) throws IOException {
+        try (ZipFile zip = new ZipFile(file)) {
+            ZipEntry entry = zip.getEntry(metadataEntry);
+            if (entry == null) return null;
+            Properties properties = new Properties();
+            try (InputStream in = zip.getInputStream(entry)) {
+                properties.load(in);
+            }
+            return ModelMetadata.fromProperties(properties);
+        }
+    }
+}
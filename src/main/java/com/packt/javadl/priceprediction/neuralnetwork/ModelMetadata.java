@@ -0,0 +1,137 @@
+package com.packt.javadl.priceprediction.neuralnetwork;
+
+import com.packt.javadl.priceprediction.representation.FeatureStore;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.representation.StockDataSetIterator;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Everything needed to feed a saved model without the training data: normalizer, feature layout,
+ * window length and target category
+ */
+@Data
+@AllArgsConstructor
+public class ModelMetadata {
+
+    /**
+     * outputs of the multi-output graph, in feature order: the numeric features, BUY / SELL / NO_DECISION and
+     * EXECUTE / NO_EXECUTE
+     */
+    public static final int PRICE_OUTPUTS = PriceCategory.BUY.featureIndex;
+    public static final int DECISION_OUTPUTS = PriceCategory.EXECUTE.featureIndex - PriceCategory.BUY.featureIndex;
+    public static final int EXECUTE_OUTPUTS = VECTOR_SIZE - PriceCategory.EXECUTE.featureIndex;
+
+    private String symbol;
+    private PriceCategory category;
+    private int exampleLength;
+    private double[] minArray;
+    private double[] maxArray;
+
+    /**
+     * PriceCategory names by feature index
+     */
+    private String[] features;
+
+    /**
+     * date of the last training bar, yyyyMMddHHmmss
+     */
+    private long lastTimestamp;
+
+    private int version;
+
+    public static ModelMetadata fromIterator(StockDataSetIterator iterator, int version) {
+        FeatureStore store = iterator.getStore();
+        long lastTimestamp = iterator.getSplit() > 0 ? store.getTimestamp(iterator.getSplit() - 1) : 0;
+        return new ModelMetadata(store.getSymbol(), iterator.getCategory(), iterator.getExampleLength(),
+                iterator.getMinArray().clone(), iterator.getMaxArray().clone(), currentFeatures(), lastTimestamp, version);
+    }
+
+    public static String[] currentFeatures() {
+        String[] features = new String[VECTOR_SIZE];
+        for (int k = 0; k < VECTOR_SIZE; k++) {
+            features[k] = PriceCategory.fromFeatureIndex(k).name();
+        }
+        return features;
+    }
+
+    /**
+     * @return number of outputs of the model
+     */
+    public int outputs() {
+        return predictsAllFeatures() ? VECTOR_SIZE : 1;
+    }
+
+    /**
+     * @return true for an ALL network and for a multi-output graph, whose outputs are joined in feature order
+     */
+    public boolean predictsAllFeatures() {
+        return category == PriceCategory.ALL || category == PriceCategory.MULTI;
+    }
+
+    /**
+     * @return index of the feature predicted by an output of the model
+     */
+    public int outputFeatureIndex(int output) {
+        return predictsAllFeatures() ? output : category.featureIndex;
+    }
+
+    public double normalize(double value, int featureIndex) {
+        return (value - minArray[featureIndex]) / (maxArray[featureIndex] - minArray[featureIndex]);
+    }
+
+    public double denormalize(double value, int featureIndex) {
+        return value * (maxArray[featureIndex] - minArray[featureIndex]) + minArray[featureIndex];
+    }
+
+    /**
+     * @throws IllegalStateException if the model was saved with another feature layout
+     */
+    public void checkFeatureLayout() {
+        if (!Arrays.equals(features, currentFeatures())) {
+            throw new IllegalStateException(MessageFormat.format("Model features {0} do not match the current features {1}",
+                    Arrays.toString(features), Arrays.toString(currentFeatures())));
+        }
+    }
+
+    public Properties toProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("symbol", symbol);
+        properties.setProperty("category", category.name());
+        properties.setProperty("exampleLength", String.valueOf(exampleLength));
+        properties.setProperty("min", join(minArray));
+        properties.setProperty("max", join(maxArray));
+        properties.setProperty("features", String.join(",", features));
+        properties.setProperty("lastTimestamp", String.valueOf(lastTimestamp));
+        properties.setProperty("version", String.valueOf(version));
+        return properties;
+    }
+
+    public static ModelMetadata fromProperties(Properties properties) {
+        return new ModelMetadata(
+                properties.getProperty("symbol"),
+                PriceCategory.valueOf(properties.getProperty("category")),
+                Integer.parseInt(properties.getProperty("exampleLength")),
+                split(properties.getProperty("min")),
+                split(properties.getProperty("max")),
+                properties.getProperty("features").split(","),
+                Long.parseLong(properties.getProperty("lastTimestamp", "0")),
+                Integer.parseInt(properties.getProperty("version", "1"))
+        );
+    }
+
+    private static String join(double[] values) {
+        return Arrays.stream(values).mapToObj(Double::toString).collect(Collectors.joining(","));
+    }
+
+    private static double[] split(String values) {
+        return Arrays.stream(values.split(",")).mapToDouble(Double::parseDouble).toArray();
+    }
+}
@@ -0,0 +1,79 @@
+package com.packt.javadl.priceprediction.neuralnetwork;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.deeplearning4j.nn.conf.WorkspaceMode;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
+import org.nd4j.linalg.api.memory.enums.AllocationPolicy;
+import org.nd4j.linalg.api.memory.enums.LearningPolicy;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.text.MessageFormat;
+
+/**
+ * Memory settings of the networks built by {@link RecurrentNets}: workspace modes used during training and
+ * inference, and floating point precision of every INDArray.
+ * <p>
+ * The precision is global to ND4J, {@link #applyDataType()} has to be called once at the start of the process, before
+ * any array is created (data loading included), arrays of both precisions can not be mixed. The builders only check it.
+ */
+@Data
+@AllArgsConstructor
+public class NetworkConfiguration {
+
+    private static final String INFERENCE_WORKSPACE_ID = "STOCK_PRICE_INFERENCE";
+
+    private static final WorkspaceConfiguration INFERENCE_WORKSPACE = WorkspaceConfiguration.builder()
+            .policyAllocation(AllocationPolicy.STRICT)
+            .policyLearning(LearningPolicy.FIRST_LOOP)
+            .build();
+
+    private WorkspaceMode trainingWorkspaceMode;
+    private WorkspaceMode inferenceWorkspaceMode;
+    private DataBuffer.Type dataType;
+
+    /**
+     * DL4J defaults: workspaces enabled, current ND4J precision (float unless changed)
+     */
+    public static NetworkConfiguration defaults() {
+        return new NetworkConfiguration(WorkspaceMode.ENABLED, WorkspaceMode.ENABLED, Nd4j.dataType());
+    }
+
+    public void applyDataType() {
+        if (Nd4j.dataType() != dataType) {
+            Nd4j.setDataType(dataType);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException when ND4J uses another precision, {@link #applyDataType()} was not called
+     */
+    public void checkDataType() {
+        if (Nd4j.dataType() != dataType) {
+            throw new IllegalStateException(MessageFormat.format("ND4J data type is {0}, the network is configured for {1}",
+                    Nd4j.dataType(), dataType));
+        }
+    }
+
+    /**
+     * Set the workspace modes of a network built elsewhere, eg restored from a file
+     */
+    public void applyTo(MultiLayerNetwork net) {
+        net.getLayerWiseConfigurations().setTrainingWorkspaceMode(trainingWorkspaceMode);
+        net.getLayerWiseConfigurations().setInferenceWorkspaceMode(inferenceWorkspaceMode);
+    }
+
+    /**
+     * Scope of one inference call, every array created inside is released when it is closed, so only copies of the
+     * results may leave it. Without inference workspace the arrays are left to the garbage collector.
+     */
+    public MemoryWorkspace inferenceScope() {
+        if (inferenceWorkspaceMode == WorkspaceMode.NONE) {
+            return Nd4j.getWorkspaceManager().scopeOutOfWorkspaces();
+        }
+        return Nd4j.getWorkspaceManager().getAndActivateWorkspace(INFERENCE_WORKSPACE, INFERENCE_WORKSPACE_ID);
+    }
+}
@@ -0,0 +1,193 @@
+package com.packt.javadl.priceprediction.neuralnetwork;
+
+import com.packt.javadl.priceprediction.representation.MultiSymbolDataSetIterator;
+import com.packt.javadl.priceprediction.representation.PrefetchingDataSetIterator;
+import com.packt.javadl.priceprediction.representation.StockDataSetIterator;
+import com.packt.javadl.priceprediction.representation.TestDataSource;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.parallelism.ParallelWrapper;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.Map;
+
+/**
+ * Data parallel training of a network on all the local cores with ParallelWrapper, one model replica per worker.
+ * Replicas are either averaged every averagingFrequency iterations or share their gradients.
+ * <p>
+ * After every epoch the network is scored on the validation windows of every symbol, the last rows before the split
+ * kept out of training. A checkpoint is saved when the validation loss improves and the training stops after patience
+ * epochs without improvement. The test windows after the split are left for the final score, {@link #testLoss}.
+ */
+public class ParallelTrainer {
+
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int averagingFrequency = 3;
+    private int prefetchBuffer = 8;
+    private ParallelWrapper.TrainingMode trainingMode = ParallelWrapper.TrainingMode.AVERAGING;
+    private int epochs = 100;
+    private int patience = 10;
+    private long shuffleSeed = 12345;
+    private int evaluationBatchSize = 256;
+    private double validationRatio = 0.1;
+
+    public ParallelTrainer workers(int workers) {
+        this.workers = workers;
+        return this;
+    }
+
+    public ParallelTrainer averagingFrequency(int averagingFrequency) {
+        this.averagingFrequency = averagingFrequency;
+        return this;
+    }
+
+    public ParallelTrainer prefetchBuffer(int prefetchBuffer) {
+        this.prefetchBuffer = prefetchBuffer;
+        return this;
+    }
+
+    public ParallelTrainer trainingMode(ParallelWrapper.TrainingMode trainingMode) {
+        this.trainingMode = trainingMode;
+        return this;
+    }
+
+    public ParallelTrainer epochs(int epochs) {
+        this.epochs = epochs;
+        return this;
+    }
+
+    /**
+     * epochs without improvement of the validation loss before stopping, 0 to never stop early
+     */
+    public ParallelTrainer patience(int patience) {
+        this.patience = patience;
+        return this;
+    }
+
+    public ParallelTrainer shuffleSeed(long shuffleSeed) {
+        this.shuffleSeed = shuffleSeed;
+        return this;
+    }
+
+    /**
+     * share of the training rows of every symbol kept for early stopping and checkpoint selection
+     */
+    public ParallelTrainer validationRatio(double validationRatio) {
+        this.validationRatio = validationRatio;
+        return this;
+    }
+
+    /**
+     * Train the network, the best epoch is saved for every symbol with its own normalizer
+     *
+     * @param checkpoints symbol -> model zip, the version of a versionFile is written in its metadata
+     * @return validation loss of the best epoch
+     */
+    public double fit(MultiLayerNetwork net, MultiSymbolDataSetIterator iterator, Map<String, File> checkpoints) throws IOException {
+        for (StockDataSetIterator symbolIterator : iterator.getIterators().values()) {
+            symbolIterator.setShuffleSeed(shuffleSeed);
+            symbolIterator.setValidationRatio(validationRatio);
+        }
+
+        ParallelWrapper wrapper = new ParallelWrapper.Builder<>(net)
+                .workers(workers)
+                .averagingFrequency(averagingFrequency)
+                .prefetchBuffer(prefetchBuffer)
+                .reportScoreAfterAveraging(true)
+                .trainingMode(trainingMode)
+                .build();
+        LoggingUtils.print(MessageFormat.format("Training with {0} workers, {1}, averaging frequency {2}, prefetch buffer {3}",
+                workers, trainingMode, averagingFrequency, prefetchBuffer));
+
+        double bestLoss = Double.MAX_VALUE;
+        int bestEpoch = -1;
+        try (PrefetchingDataSetIterator prefetching = new PrefetchingDataSetIterator(iterator, prefetchBuffer)) {
+            for (int epoch = 0; epoch < epochs; epoch++) {
+                long start = System.nanoTime();
+                if (epoch > 0) prefetching.reset();
+                wrapper.fit(prefetching);
+                long trainingMillis = (System.nanoTime() - start) / 1_000_000;
+
+                double loss = validationLoss(net, iterator);
+                LoggingUtils.print(MessageFormat.format("Epoch {0}: {1} examples in {2} ms, validation loss {3}",
+                        epoch, iterator.totalExamples(), trainingMillis, loss));
+                prefetching.printStats();
+
+                // without validation windows every epoch is kept
+                if (Double.isNaN(loss) || loss < bestLoss) {
+                    bestLoss = loss;
+                    bestEpoch = epoch;
+                    for (Map.Entry<String, File> checkpoint : checkpoints.entrySet()) {
+                        StockDataSetIterator symbolIterator = iterator.getIterator(checkpoint.getKey());
+                        ModelArtifact.save(net, ModelMetadata.fromIterator(symbolIterator, ModelArtifact.fileVersion(checkpoint.getValue())), checkpoint.getValue());
+                    }
+                } else if (patience > 0 && epoch - bestEpoch >= patience) {
+                    LoggingUtils.print(MessageFormat.format("Early stopping, no improvement since epoch {0}", bestEpoch));
+                    break;
+                }
+            }
+        } finally {
+            wrapper.shutdown();
+        }
+        LoggingUtils.print(MessageFormat.format("Best epoch {0}, validation loss {1}", bestEpoch, bestLoss));
+        return bestLoss;
+    }
+
+    /**
+     * Mean squared error of the normalized prediction of the bar following every validation window, all symbols
+     */
+    public double validationLoss(MultiLayerNetwork net, MultiSymbolDataSetIterator iterator) {
+        double[] errors = new double[2];
+        for (StockDataSetIterator symbolIterator : iterator.getIterators().values()) {
+            addSquaredErrors(net, symbolIterator, symbolIterator.getValidationDataSet(), errors);
+        }
+        return errors[1] == 0 ? Double.NaN : errors[0] / errors[1];
+    }
+
+    /**
+     * Mean squared error of the normalized prediction of the bar following every test window, all symbols
+     */
+    public double testLoss(MultiLayerNetwork net, MultiSymbolDataSetIterator iterator) {
+        double[] errors = new double[2];
+        for (StockDataSetIterator symbolIterator : iterator.getIterators().values()) {
+            addSquaredErrors(net, symbolIterator, symbolIterator.getTestDataSet(), errors);
+        }
+        return errors[1] == 0 ? Double.NaN : errors[0] / errors[1];
+    }
+
+    /**
+     * Mean squared error of the normalized prediction of the bar following every test window
+     */
+    public double testLoss(MultiLayerNetwork net, StockDataSetIterator iterator) {
+        double[] errors = new double[2];
+        addSquaredErrors(net, iterator, iterator.getTestDataSet(), errors);
+        return errors[1] == 0 ? Double.NaN : errors[0] / errors[1];
+    }
+
+    /**
+     * @param errors sum of squared errors and number of errors, updated
+     */
+    private void addSquaredErrors(MultiLayerNetwork net, StockDataSetIterator symbolIterator, TestDataSource test, double[] errors) {
+        int exampleLength = test.getExampleLength();
+        for (int from = 0; from < test.size(); from += evaluationBatchSize) {
+            int batch = Math.min(evaluationBatchSize, test.size() - from);
+            INDArray output = net.output(test.getInputBatch(from, batch), false)
+                    .get(NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.point(exampleLength - 1));
+            int outputs = (int) output.size(1);
+            for (int i = 0; i < batch; i++) {
+                for (int n = 0; n < outputs; n++) {
+                    int featureIndex = outputs == 1 ? test.getCategory().featureIndex : n;
+                    double actual = (test.getActual(from + i, featureIndex) - symbolIterator.getMinArray()[featureIndex])
+                            / (symbolIterator.getMaxArray()[featureIndex] - symbolIterator.getMinArray()[featureIndex]);
+                    double error = output.getDouble(i, n) - actual;
+                    errors[0] += error * error;
+                    errors[1]++;
+                }
+            }
+        }
+    }
+}
@@ -2,11 +2,15 @@ package com.packt.javadl.priceprediction.neuralnetwork;
 
 import org.deeplearning4j.nn.api.OptimizationAlgorithm;
 import org.deeplearning4j.nn.conf.BackpropType;
+import org.deeplearning4j.nn.conf.ComputationGraphConfiguration;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration.ListBuilder;
+import org.deeplearning4j.nn.conf.inputs.InputType;
 import org.deeplearning4j.nn.conf.layers.DenseLayer;
 import org.deeplearning4j.nn.conf.layers.LSTM;
 import org.deeplearning4j.nn.conf.layers.RnnOutputLayer;
+import org.deeplearning4j.nn.graph.ComputationGraph;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.weights.WeightInit;
 import org.deeplearning4j.optimize.listeners.ScoreIterationListener;
@@ -24,8 +28,15 @@ public class RecurrentNets {
     private static final double learningRate = 0.1;
 
     public static MultiLayerNetwork fullLstmNetwork(int nIn, int nOut) {
+        return fullLstmNetwork(nIn, nOut, NetworkConfiguration.defaults());
+    }
+
+    public static MultiLayerNetwork fullLstmNetwork(int nIn, int nOut, NetworkConfiguration configuration) {
+        configuration.checkDataType();
         MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
                 .seed(seed)
+                .trainingWorkspaceMode(configuration.getTrainingWorkspaceMode())
+                .inferenceWorkspaceMode(configuration.getInferenceWorkspaceMode())
                 .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
                 .updater(new Adam(learningRate))
                 .l2(1e-4)
@@ -91,8 +102,15 @@ public class RecurrentNets {
     private static final int lightLstmLayer2Size = 32;
 
     public static MultiLayerNetwork lightLstmNetwork(int nIn, int nOut) {
+        return lightLstmNetwork(nIn, nOut, NetworkConfiguration.defaults());
+    }
+
+    public static MultiLayerNetwork lightLstmNetwork(int nIn, int nOut, NetworkConfiguration configuration) {
+        configuration.checkDataType();
         MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
                 .seed(123456)
+                .trainingWorkspaceMode(configuration.getTrainingWorkspaceMode())
+                .inferenceWorkspaceMode(configuration.getInferenceWorkspaceMode())
                 .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
                 .updater(new Adam(0.001))
                 .l2(1e-4)
@@ -138,4 +156,145 @@ public class RecurrentNets {
         net.setListeners(new ScoreIterationListener(1));
         return net;
     }
+
+    /**
+     * Same layout as fullLstmNetwork with the number and size of the layers, dropout, learning rate and
+     * truncated BPTT length taken from the hyperparameters
+     */
+    public static MultiLayerNetwork lstmNetwork(int nIn, int nOut, LstmHyperparameters hyperparameters) {
+        return lstmNetwork(nIn, nOut, hyperparameters, NetworkConfiguration.defaults());
+    }
+
+    public static MultiLayerNetwork lstmNetwork(int nIn, int nOut, LstmHyperparameters hyperparameters, NetworkConfiguration configuration) {
+        configuration.checkDataType();
+        ListBuilder builder = new NeuralNetConfiguration.Builder()
+                .seed(seed)
+                .trainingWorkspaceMode(configuration.getTrainingWorkspaceMode())
+                .inferenceWorkspaceMode(configuration.getInferenceWorkspaceMode())
+                .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                .updater(new Adam(hyperparameters.getLearningRate()))
+                .l2(1e-4)
+                .weightInit(WeightInit.XAVIER)
+                .activation(Activation.IDENTITY)
+                .list();
+
+        int layer = 0;
+        int layerIn = nIn;
+        for (int i = 0; i < hyperparameters.getLstmLayers(); i++) {
+            builder.layer(layer++, new LSTM.Builder()
+                    .nIn(layerIn)
+                    .nOut(hyperparameters.getLstmLayerSize())
+                    .activation(Activation.TANH)
+                    .gateActivationFunction(Activation.HARDSIGMOID)
+                    .dropOut(hyperparameters.getDropoutRatio())
+                    .build());
+            layerIn = hyperparameters.getLstmLayerSize();
+        }
+        for (int i = 0; i < hyperparameters.getDenseLayers(); i++) {
+            builder.layer(layer++, new DenseLayer.Builder()
+                    .nIn(layerIn)
+                    .nOut(hyperparameters.getDenseLayerSize())
+                    .activation(Activation.RELU)
+                    .build());
+            layerIn = hyperparameters.getDenseLayerSize();
+        }
+        MultiLayerConfiguration conf = builder
+                .layer(layer, new RnnOutputLayer.Builder()
+                        .nIn(layerIn)
+                        .nOut(nOut)
+                        .activation(Activation.IDENTITY)
+                        .lossFunction(LossFunctions.LossFunction.MSE)
+                        .build())
+                .backpropType(BackpropType.TruncatedBPTT)
+                .tBPTTForwardLength(hyperparameters.getExampleLength())
+                .tBPTTBackwardLength(hyperparameters.getExampleLength())
+                .pretrain(false)
+                .backprop(true)
+                .build();
+
+        MultiLayerNetwork net = new MultiLayerNetwork(conf);
+        net.init();
+        return net;
+    }
+
+    /**
+     * One LSTM trunk, as in fullLstmNetwork, shared by three heads, every signal of a bar in one forward pass:
+     * "prices" regression of the numeric features, "decision" softmax over BUY / SELL / NO_DECISION and
+     * "execute" softmax over EXECUTE / NO_EXECUTE. Trained with StockMultiDataSetIterator.
+     */
+    public static ComputationGraph multiOutputLstmGraph(int nIn) {
+        return multiOutputLstmGraph(nIn, NetworkConfiguration.defaults());
+    }
+
+    public static ComputationGraph multiOutputLstmGraph(int nIn, NetworkConfiguration configuration) {
+        configuration.checkDataType();
+        ComputationGraphConfiguration conf = new NeuralNetConfiguration.Builder()
+                .seed(seed)
+                .trainingWorkspaceMode(configuration.getTrainingWorkspaceMode())
+                .inferenceWorkspaceMode(configuration.getInferenceWorkspaceMode())
+                .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
+                .updater(new Adam(0.001))
+                .l2(1e-4)
+                .weightInit(WeightInit.XAVIER)
+                .activation(Activation.IDENTITY)
+                .graphBuilder()
+                .addInputs("bars")
+                .addLayer("lstm1", new LSTM.Builder()
+                        .nIn(nIn)
+                        .nOut(lstmLayer1Size)
+                        .activation(Activation.TANH)
+                        .gateActivationFunction(Activation.HARDSIGMOID)
+                        .dropOut(dropoutRatio)
+                        .build(), "bars")
+                .addLayer("lstm2", new LSTM.Builder()
+                        .nIn(lstmLayer1Size)
+                        .nOut(lstmLayer2Size)
+                        .activation(Activation.TANH)
+                        .gateActivationFunction(Activation.HARDSIGMOID)
+                        .dropOut(dropoutRatio)
+                        .build(), "lstm1")
+                .addLayer("lstm3", new LSTM.Builder()
+                        .nIn(lstmLayer2Size)
+                        .nOut(lstmLayer2Size)
+                        .activation(Activation.TANH)
+                        .gateActivationFunction(Activation.HARDSIGMOID)
+                        .dropOut(dropoutRatio)
+                        .build(), "lstm2")
+                .addLayer("trunk", new DenseLayer.Builder()
+                        .nIn(lstmLayer2Size)
+                        .nOut(denseLayerSize)
+                        .activation(Activation.RELU)
+                        .build(), "lstm3")
+                .addLayer("prices", new RnnOutputLayer.Builder()
+                        .nIn(denseLayerSize)
+                        .nOut(ModelMetadata.PRICE_OUTPUTS)
+                        .activation(Activation.IDENTITY)
+                        .lossFunction(LossFunctions.LossFunction.MSE)
+                        .build(), "trunk")
+                .addLayer("decision", new RnnOutputLayer.Builder()
+                        .nIn(denseLayerSize)
+                        .nOut(ModelMetadata.DECISION_OUTPUTS)
+                        .activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT)
+                        .build(), "trunk")
+                .addLayer("execute", new RnnOutputLayer.Builder()
+                        .nIn(denseLayerSize)
+                        .nOut(ModelMetadata.EXECUTE_OUTPUTS)
+                        .activation(Activation.SOFTMAX)
+                        .lossFunction(LossFunctions.LossFunction.MCXENT)
+                        .build(), "trunk")
+                .setOutputs("prices", "decision", "execute")
+                .setInputTypes(InputType.recurrent(nIn))
+                .backpropType(BackpropType.TruncatedBPTT)
+                .tBPTTForwardLength(truncatedBPTTLength)
+                .tBPTTBackwardLength(truncatedBPTTLength)
+                .pretrain(false)
+                .backprop(true)
+                .build();
+
+        ComputationGraph graph = new ComputationGraph(conf);
+        graph.init();
+        graph.setListeners(new ScoreIterationListener(1));
+        return graph;
+    }
 }
@@ -0,0 +1,242 @@
+package com.packt.javadl.priceprediction.neuralnetwork;
+
+import com.packt.javadl.priceprediction.representation.FeatureStore;
+import com.packt.javadl.priceprediction.representation.NormalizedSeries;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.representation.StockBinaryCache;
+import com.packt.javadl.priceprediction.representation.StockDataSetIterator;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import org.apache.spark.SparkConf;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.storage.StorageLevel;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.spark.api.RDDTrainingApproach;
+import org.deeplearning4j.spark.impl.multilayer.SparkDl4jMultiLayer;
+import org.deeplearning4j.spark.impl.paramavg.ParameterAveragingTrainingMaster;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Data parallel training with Spark and parameter averaging, every partition of the mini-batches RDD is built and
+ * fitted by an executor and the parameters are averaged every averagingFrequency mini-batches.
+ * <p>
+ * The master defaults to local[*] so no cluster is needed, the same job runs on executors with a spark:// or yarn master.
+ */
+public class SparkTrainer {
+
+    /**
+     * bars and normalized series of the symbol files read by this JVM, shared by its tasks and kept between the epochs
+     */
+    private static final ConcurrentMap<String, SymbolData> symbolData = new ConcurrentHashMap<>();
+
+    private String master = "local[*]";
+    private int averagingFrequency = 5;
+    private int workerPrefetch = 2;
+    private int epochs = 1;
+    private long seed = 12345;
+
+    public SparkTrainer master(String master) {
+        this.master = master;
+        return this;
+    }
+
+    public SparkTrainer averagingFrequency(int averagingFrequency) {
+        this.averagingFrequency = averagingFrequency;
+        return this;
+    }
+
+    public SparkTrainer workerPrefetch(int workerPrefetch) {
+        this.workerPrefetch = workerPrefetch;
+        return this;
+    }
+
+    public SparkTrainer epochs(int epochs) {
+        this.epochs = epochs;
+        return this;
+    }
+
+    /**
+     * the windows are shuffled at every epoch with seed + epoch
+     */
+    public SparkTrainer seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Windows of a symbol given to one task, those whose index modulo slices is slice
+     */
+    private static class WindowSlice implements Serializable {
+        private final String symbol;
+        private final String filename;
+        private final int slice;
+        private final int slices;
+
+        WindowSlice(String symbol, String filename, int slice, int slices) {
+            this.symbol = symbol;
+            this.filename = filename;
+            this.slice = slice;
+            this.slices = slices;
+        }
+    }
+
+    private static class SymbolData {
+        private final FeatureStore store;
+        private final NormalizedSeries series;
+
+        SymbolData(FeatureStore store, NormalizedSeries series) {
+            this.store = store;
+            this.series = series;
+        }
+    }
+
+    /**
+     * Train the network on the windows of the symbol files, the mini-batches are built by the executors: only the
+     * file names leave the driver, every executor reads the files of its slices once (they must be reachable at the same
+     * path, e.g. a shared file system) and builds their mini-batches again at every epoch in a new shuffled order.
+     *
+     * @param symbolFiles symbol -> CSV file
+     * @return examples per second of every epoch
+     */
+    public double[] fit(MultiLayerNetwork net, Map<String, String> symbolFiles, int batchSize, int exampleLength,
+                        double splitRatio, PriceCategory category) {
+        SparkConf conf = new SparkConf()
+                .setMaster(master)
+                .setAppName("StockPricePredictionLSTM");
+        JavaSparkContext sc = new JavaSparkContext(conf);
+        ParameterAveragingTrainingMaster trainingMaster = new ParameterAveragingTrainingMaster.Builder(batchSize)
+                .batchSizePerWorker(batchSize)
+                .averagingFrequency(averagingFrequency)
+                .workerPrefetchNumBatches(workerPrefetch)
+                .rddTrainingApproach(RDDTrainingApproach.Direct)
+                .build();
+        try {
+            int workers = sc.defaultParallelism();
+            // a symbol is cut in slices when there are fewer symbols than workers
+            int slices = Math.max(1, (workers + symbolFiles.size() - 1) / symbolFiles.size());
+            List<WindowSlice> windowSlices = new ArrayList<>();
+            for (Map.Entry<String, String> symbolFile : symbolFiles.entrySet()) {
+                for (int slice = 0; slice < slices; slice++) {
+                    windowSlices.add(new WindowSlice(symbolFile.getKey(), symbolFile.getValue(), slice, slices));
+                }
+            }
+            // the slices of a symbol share its windows, the count does not depend on the epoch
+            long examples = 0;
+            for (Map.Entry<String, String> symbolFile : symbolFiles.entrySet()) {
+                examples += symbolIterator(symbolFile.getValue(), symbolFile.getKey(), batchSize, exampleLength, splitRatio, category).totalExamples();
+            }
+            SparkDl4jMultiLayer sparkNet = new SparkDl4jMultiLayer(sc, net, trainingMaster);
+            LoggingUtils.print(MessageFormat.format("Training on Spark {0} with {1} workers, {2} slices of {3} symbols, averaging frequency {4}",
+                    master, workers, windowSlices.size(), symbolFiles.size(), averagingFrequency));
+
+            double[] rates = new double[epochs];
+            for (int epoch = 0; epoch < epochs; epoch++) {
+                long epochSeed = seed + epoch;
+                Collections.shuffle(windowSlices, new Random(epochSeed));
+                JavaRDD<DataSet> rdd = sc.parallelize(windowSlices, workers)
+                        .mapPartitions(partition -> batches(partition, batchSize, exampleLength, splitRatio, category, epochSeed))
+                        .persist(StorageLevel.MEMORY_AND_DISK_SER());
+
+                long start = System.nanoTime();
+                sparkNet.fit(rdd);
+                rates[epoch] = examples / ((System.nanoTime() - start) / 1e9);
+                LoggingUtils.print(MessageFormat.format("Spark epoch {0}: {1} examples, {2,number,#.#} examples/sec, score {3}",
+                        epoch, examples, rates[epoch], sparkNet.getScore()));
+                rdd.unpersist();
+            }
+            // SparkDl4jMultiLayer trains a copy, bring the averaged parameters back
+            net.setParams(sparkNet.getNetwork().params());
+            return rates;
+        } finally {
+            trainingMaster.deleteTempFiles(sc);
+            sc.stop();
+            // executors of a cluster drop theirs with the application
+            symbolData.clear();
+        }
+    }
+
+    /**
+     * Iterator over every training window of a symbol, the file is read and normalized once per JVM
+     */
+    private static StockDataSetIterator symbolIterator(String filename, String symbol, int batchSize, int exampleLength,
+                                                       double splitRatio, PriceCategory category) {
+        SymbolData data = symbolData.computeIfAbsent(filename, file -> {
+            try {
+                FeatureStore store = StockBinaryCache.load(file, symbol);
+                return new SymbolData(store, NormalizedSeries.of(store));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return new StockDataSetIterator(data.store, data.series, batchSize, exampleLength, splitRatio, category);
+    }
+
+    /**
+     * Mini-batches of the slices of a partition, built on the executor one slice at a time
+     */
+    private static Iterator<DataSet> batches(Iterator<WindowSlice> slices, int batchSize, int exampleLength, double splitRatio,
+                                             PriceCategory category, long seed) {
+        return new Iterator<DataSet>() {
+            private StockDataSetIterator iterator;
+
+            @Override
+            public boolean hasNext() {
+                while (iterator == null || !iterator.hasNext()) {
+                    if (!slices.hasNext()) return false;
+                    WindowSlice slice = slices.next();
+                    iterator = symbolIterator(slice.filename, slice.symbol, batchSize, exampleLength, splitRatio, category);
+                    int windows = iterator.totalExamples();
+                    int[] offsets = new int[(windows - slice.slice + slice.slices - 1) / slice.slices];
+                    for (int i = 0; i < offsets.length; i++) offsets[i] = slice.slice + i * slice.slices;
+                    iterator.setTrainingOffsets(offsets);
+                    iterator.setShuffleSeed(seed);
+                }
+                return true;
+            }
+
+            @Override
+            public DataSet next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return iterator.next();
+            }
+        };
+    }
+
+    /**
+     * Single JVM baseline, the mini-batches of the iterator fitted one after the other
+     *
+     * @return examples per second of every epoch
+     */
+    public double[] fitLocal(MultiLayerNetwork net, DataSetIterator iterator) {
+        double[] rates = new double[epochs];
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            iterator.reset();
+            long examples = 0;
+            long start = System.nanoTime();
+            while (iterator.hasNext()) {
+                DataSet batch = iterator.next();
+                examples += batch.numExamples();
+                net.fit(batch);
+            }
+            rates[epoch] = examples / ((System.nanoTime() - start) / 1e9);
+            LoggingUtils.print(MessageFormat.format("Single JVM epoch {0}: {1} examples, {2,number,#.#} examples/sec, score {3}",
+                    epoch, examples, rates[epoch], net.score()));
+        }
+        return rates;
+    }
+}
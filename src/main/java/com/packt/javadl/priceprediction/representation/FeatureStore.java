@@ -0,0 +1,44 @@
+package com.packt.javadl.priceprediction.representation;
+
+/**
+ * Columnar access to the parsed stock bars, one primitive column per {@link PriceCategory#featureIndex}
+ */
+public interface FeatureStore {
+
+    String getSymbol();
+
+    /**
+     * number of bars
+     */
+    int size();
+
+    /**
+     * @return the date of the bar as a yyyyMMddHHmmss number
+     */
+    long getTimestamp(int row);
+
+    double getValue(int row, int featureIndex);
+
+    /**
+     * bulk copy of a range of one feature column
+     */
+    void copyColumn(int featureIndex, int fromRow, double[] destination, int destinationOffset, int length);
+
+    /**
+     * Consistent view of the bars for a reader: its size, columns and min / max do not change while bars are appended.
+     * A store that cannot grow is its own snapshot.
+     */
+    default FeatureStore snapshot() {
+        return this;
+    }
+
+    /**
+     * minimal values of each feature, must not be modified
+     */
+    double[] getMinArray();
+
+    /**
+     * maximal values of each feature, must not be modified
+     */
+    double[] getMaxArray();
+}
@@ -0,0 +1,89 @@
+package com.packt.javadl.priceprediction.representation;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Read-only {@link FeatureStore} backed by a memory-mapped {@link StockBinaryCache} file,
+ * bars are paged in by the OS so the history can be larger than the heap
+ */
+public class MappedFeatureStore implements FeatureStore {
+
+    private final Path file;
+    private final String symbol;
+    private final int size;
+
+    private final LongBuffer timestamps;
+    private final DoubleBuffer[] columns = new DoubleBuffer[VECTOR_SIZE];
+
+    private final double[] minArray;
+    private final double[] maxArray;
+
+    MappedFeatureStore(Path file, StockBinaryCache.Header header) throws IOException {
+        this.file = file;
+        this.symbol = header.symbol;
+        this.size = header.rows;
+        this.minArray = header.minArray;
+        this.maxArray = header.maxArray;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // a mapping stays valid after the channel is closed
+            long position = header.dataOffset;
+            timestamps = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) size * Long.BYTES)
+                    .order(StockBinaryCache.BYTE_ORDER).asLongBuffer();
+            position += (long) size * Long.BYTES;
+            for (int k = 0; k < VECTOR_SIZE; k++) {
+                columns[k] = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) size * Double.BYTES)
+                        .order(StockBinaryCache.BYTE_ORDER).asDoubleBuffer();
+                position += (long) size * Double.BYTES;
+            }
+        }
+    }
+
+    /**
+     * @return the binary cache the bars are mapped from
+     */
+    Path getFile() {
+        return file;
+    }
+
+    @Override
+    public String getSymbol() {
+        return symbol;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getTimestamp(int row) {
+        return timestamps.get(row);
+    }
+
+    @Override
+    public double getValue(int row, int featureIndex) {
+        return columns[featureIndex].get(row);
+    }
+
+    @Override
+    public void copyColumn(int featureIndex, int fromRow, double[] destination, int destinationOffset, int length) {
+        columns[featureIndex].get(fromRow, destination, destinationOffset, length);
+    }
+
+    @Override
+    public double[] getMinArray() {
+        return minArray;
+    }
+
+    @Override
+    public double[] getMaxArray() {
+        return maxArray;
+    }
+}
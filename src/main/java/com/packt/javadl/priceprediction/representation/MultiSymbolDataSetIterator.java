@@ -0,0 +1,137 @@
+package com.packt.javadl.priceprediction.representation;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Interleave the mini-batches of one {@link StockDataSetIterator} per symbol, round robin.
+ * Every symbol is normalized with its own min / max.
+ */
+@SuppressWarnings("serial")
+public class MultiSymbolDataSetIterator implements DataSetIterator {
+
+    private final Map<String, StockDataSetIterator> iterators = new LinkedHashMap<>();
+    private final List<StockDataSetIterator> order = new ArrayList<>();
+    private final int miniBatchSize;
+
+    /**
+     * next symbol to be used
+     */
+    private int position;
+
+    public MultiSymbolDataSetIterator(Map<String, FeatureStore> stores, int miniBatchSize, int exampleLength, double splitRatio, PriceCategory category) {
+        this.miniBatchSize = miniBatchSize;
+        for (Map.Entry<String, FeatureStore> entry : stores.entrySet()) {
+            StockDataSetIterator iterator = new StockDataSetIterator(entry.getValue(), miniBatchSize, exampleLength, splitRatio, category);
+            iterators.put(entry.getKey(), iterator);
+            order.add(iterator);
+        }
+        if (order.isEmpty()) throw new IllegalArgumentException("No symbol to iterate");
+    }
+
+    public StockDataSetIterator getIterator(String symbol) {
+        return iterators.get(symbol);
+    }
+
+    public Map<String, StockDataSetIterator> getIterators() {
+        return iterators;
+    }
+
+    @Override
+    public DataSet next(int num) {
+        for (int i = 0; i < order.size(); i++) {
+            StockDataSetIterator iterator = order.get(position);
+            position = (position + 1) % order.size();
+            if (iterator.hasNext()) return iterator.next(num);
+        }
+        throw new NoSuchElementException();
+    }
+
+    @Override
+    public boolean hasNext() {
+        for (StockDataSetIterator iterator : order) {
+            if (iterator.hasNext()) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public DataSet next() {
+        return next(miniBatchSize);
+    }
+
+    @Override
+    public int totalExamples() {
+        int total = 0;
+        for (StockDataSetIterator iterator : order) total += iterator.totalExamples();
+        return total;
+    }
+
+    @Override
+    public int inputColumns() {
+        return order.get(0).inputColumns();
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return order.get(0).totalOutcomes();
+    }
+
+    @Override
+    public boolean resetSupported() {
+        for (StockDataSetIterator iterator : order) {
+            if (!iterator.resetSupported()) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return false;
+    }
+
+    @Override
+    public void reset() {
+        for (StockDataSetIterator iterator : order) iterator.reset();
+        position = 0;
+    }
+
+    @Override
+    public int batch() {
+        return miniBatchSize;
+    }
+
+    @Override
+    public int cursor() {
+        int cursor = 0;
+        for (StockDataSetIterator iterator : order) cursor += iterator.cursor();
+        return cursor;
+    }
+
+    @Override
+    public int numExamples() {
+        return totalExamples();
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor dataSetPreProcessor) {
+        throw new UnsupportedOperationException("Not Implemented");
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        throw new UnsupportedOperationException("Not Implemented");
+    }
+
+    @Override
+    public List<String> getLabels() {
+        throw new UnsupportedOperationException("Not Implemented");
+    }
+}
@@ -0,0 +1,79 @@
+package com.packt.javadl.priceprediction.representation;
+
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load the files of many symbols concurrently on a bounded thread pool
+ */
+public class MultiSymbolLoader {
+
+    /**
+     * @return symbol -> file of every data/XXX.csv file of the directory, sorted by symbol
+     */
+    public static Map<String, String> findSymbolFiles(String directory) {
+        File[] files = new File(directory).listFiles((dir, name) -> name.endsWith(".csv"));
+        Map<String, String> symbolFiles = new LinkedHashMap<>();
+        if (files == null) return symbolFiles;
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            symbolFiles.put(name.substring(0, name.length() - 4), file.getPath());
+        }
+        return symbolFiles;
+    }
+
+    public static Map<String, FeatureStore> load(Map<String, String> symbolFiles) {
+        return load(symbolFiles, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param symbolFiles symbol -> CSV file
+     * @param threads     maximal number of files parsed at the same time
+     * @return symbol -> store, in the order of symbolFiles
+     */
+    public static Map<String, FeatureStore> load(Map<String, String> symbolFiles, int threads) {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, symbolFiles.size())));
+        try {
+            List<Future<FeatureStore>> futures = new ArrayList<>();
+            for (Map.Entry<String, String> entry : symbolFiles.entrySet()) {
+                futures.add(executor.submit(() -> StockBinaryCache.load(entry.getValue(), entry.getKey())));
+            }
+
+            Map<String, FeatureStore> stores = new LinkedHashMap<>();
+            int rows = 0;
+            int i = 0;
+            for (String symbol : symbolFiles.keySet()) {
+                FeatureStore store = futures.get(i++).get();
+                rows += store.size();
+                stores.put(symbol, store);
+            }
+            LoggingUtils.print(MessageFormat.format("Loaded {0} symbols, {1} rows in {2} ms",
+                    stores.size(), rows, (System.nanoTime() - start) / 1_000_000));
+            return stores;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading symbols", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new RuntimeException(MessageFormat.format("Failed to load symbols: {0}", e.getCause().getMessage()), e.getCause());
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.packt.javadl.priceprediction.representation;
+
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Bars normalized once with the min / max of the store, in a single [time x feature] series:
+ * feature k of a row is at row * VECTOR_SIZE + k, so a window is a contiguous range of the series.
+ * <p>
+ * The series of a memory-mapped store is itself mapped from a file next to the binary cache (data/AUD.bin -> data/AUD.norm),
+ * written on the first use. The series of an on-heap store is kept on the heap and grows with the store:
+ * bars appended without changing min / max are normalized alone, otherwise the whole series is normalized again.
+ * <p>
+ * An instance is immutable, {@link #append(FeatureStore)} returns a new one. Rows are only written after the last row of
+ * the published instances, so their windows stay valid.
+ * <p>
+ * Layout of the file (little endian):
+ * <pre>
+ * int magic, int version, int featuresCount, int rows, long binLastModified,
+ * double[featuresCount] min, double[featuresCount] max,
+ * double[rows * featuresCount] normalized values
+ * </pre>
+ */
+public class NormalizedSeries {
+
+    private static final int MAGIC = 0x53544B4E; // STKN
+    private static final int VERSION = 1;
+
+    private static final int headerSize = 4 * Integer.BYTES + Long.BYTES + 2 * VECTOR_SIZE * Double.BYTES;
+
+    /**
+     * rows normalized per chunk
+     */
+    private static final int chunkRows = 8192;
+
+    private final DoubleBuffer values;
+    private final int rows;
+
+    private final double[] minArray;
+    private final double[] maxArray;
+
+    private NormalizedSeries(DoubleBuffer values, int rows, double[] minArray, double[] maxArray) {
+        this.values = values;
+        this.rows = rows;
+        this.minArray = minArray;
+        this.maxArray = maxArray;
+    }
+
+    /**
+     * Normalize the bars, or map the series already written for a memory-mapped store
+     */
+    public static NormalizedSeries of(FeatureStore bars) {
+        if (bars instanceof MappedFeatureStore) {
+            Path file = ((MappedFeatureStore) bars).getFile();
+            Path series = seriesFileFor(file);
+            try {
+                return map(bars, file, series);
+            } catch (IOException | UnsupportedOperationException e) {
+                // normalized on the heap, the next run tries to write the file again
+                LoggingUtils.print(MessageFormat.format("Normalized series {0} not mapped: {1}", series, e.getMessage()));
+            }
+        }
+        return onHeap(bars, bars.size());
+    }
+
+    public static Path seriesFileFor(Path cache) {
+        String name = cache.getFileName().toString();
+        if (name.endsWith(".bin")) name = name.substring(0, name.length() - 4);
+        return cache.resolveSibling(name + ".norm");
+    }
+
+    /**
+     * @param bars a later snapshot of the same store
+     * @return the series of all the bars, sharing the rows of this one when min / max did not change
+     */
+    public NormalizedSeries append(FeatureStore bars) {
+        int size = bars.size();
+        if (size < rows) {
+            throw new IllegalArgumentException(MessageFormat.format("{0} bars, the series already has {1} rows", size, rows));
+        }
+        if (!Arrays.equals(minArray, bars.getMinArray()) || !Arrays.equals(maxArray, bars.getMaxArray())) {
+            return onHeap(bars, Math.max(size, rows * 2));
+        }
+        if (size == rows) return this;
+
+        DoubleBuffer destination = values;
+        if (values.isReadOnly() || (long) size * VECTOR_SIZE > values.capacity()) {
+            destination = allocate(Math.max(size, rows * 2));
+            destination.put(0, values, 0, rows * VECTOR_SIZE);
+        }
+        normalize(bars, rows, size, destination, rows);
+        return new NormalizedSeries(destination, size, minArray, maxArray);
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    public double get(int row, int featureIndex) {
+        if (row >= rows) throw new IndexOutOfBoundsException(row);
+        return values.get(row * VECTOR_SIZE + featureIndex);
+    }
+
+    /**
+     * Bulk copy of the rows [fromRow, fromRow + count), in the layout of the series
+     */
+    public void copyRows(int fromRow, int count, double[] destination, int destinationOffset) {
+        if (fromRow < 0 || fromRow + count > rows) throw new IndexOutOfBoundsException(fromRow + count);
+        values.get(fromRow * VECTOR_SIZE, destination, destinationOffset, count * VECTOR_SIZE);
+    }
+
+    /**
+     * @return read-only view of the rows [fromRow, fromRow + count), nothing is copied
+     */
+    public DoubleBuffer window(int fromRow, int count) {
+        if (fromRow < 0 || fromRow + count > rows) throw new IndexOutOfBoundsException(fromRow + count);
+        return values.slice(fromRow * VECTOR_SIZE, count * VECTOR_SIZE).asReadOnlyBuffer();
+    }
+
+    /**
+     * Put the rows [fromRow, fromRow + length) of a copied window in a [batchSize, VECTOR_SIZE, length] batch in 'f' order,
+     * [index, k, c] is at index + batchSize * (k + VECTOR_SIZE * c)
+     */
+    public static void putWindow(double[] window, int fromRow, int length, int index, int batchSize, double[] batch) {
+        for (int c = 0; c < length; c++) {
+            int source = (fromRow + c) * VECTOR_SIZE;
+            for (int k = 0; k < VECTOR_SIZE; k++) {
+                batch[index + batchSize * (k + VECTOR_SIZE * c)] = window[source + k];
+            }
+        }
+    }
+
+    public double[] getMinArray() {
+        return minArray;
+    }
+
+    public double[] getMaxArray() {
+        return maxArray;
+    }
+
+    private static NormalizedSeries onHeap(FeatureStore bars, int capacity) {
+        DoubleBuffer values = allocate(capacity);
+        normalize(bars, 0, bars.size(), values, 0);
+        return new NormalizedSeries(values, bars.size(), bars.getMinArray(), bars.getMaxArray());
+    }
+
+    private static DoubleBuffer allocate(int rows) {
+        return DoubleBuffer.allocate(Math.max(rows, 1) * VECTOR_SIZE);
+    }
+
+    /**
+     * Normalize the rows [from, to) of the bars into the destination, row from is written at destinationRow
+     */
+    private static void normalize(FeatureStore bars, int from, int to, DoubleBuffer destination, int destinationRow) {
+        double[] minArray = bars.getMinArray();
+        double[] maxArray = bars.getMaxArray();
+        int chunkLength = Math.min(chunkRows, to - from);
+        double[] column = new double[chunkLength];
+        double[] chunk = new double[chunkLength * VECTOR_SIZE];
+        for (int start = from; start < to; start += chunkLength) {
+            int length = Math.min(chunkLength, to - start);
+            for (int k = 0; k < VECTOR_SIZE; k++) {
+                bars.copyColumn(k, start, column, 0, length);
+                double min = minArray[k];
+                double range = maxArray[k] - minArray[k];
+                for (int r = 0; r < length; r++) {
+                    chunk[r * VECTOR_SIZE + k] = (column[r] - min) / range;
+                }
+            }
+            destination.put((destinationRow + start - from) * VECTOR_SIZE, chunk, 0, length * VECTOR_SIZE);
+        }
+    }
+
+    /**
+     * Map the series file if it holds these bars, otherwise write it to a temporary file then move it in place
+     */
+    private static NormalizedSeries map(FeatureStore bars, Path cache, Path series) throws IOException {
+        int rows = bars.size();
+        long dataSize = (long) rows * VECTOR_SIZE * Double.BYTES;
+        if (dataSize > Integer.MAX_VALUE) {
+            throw new IOException(MessageFormat.format("{0} rows do not fit in a single mapping", rows));
+        }
+        long binLastModified = Files.getLastModifiedTime(cache).toMillis();
+
+        if (!Files.exists(series) || !matches(series, bars, binLastModified)) {
+            write(bars, series, binLastModified);
+        }
+        try (FileChannel channel = FileChannel.open(series, StandardOpenOption.READ)) {
+            DoubleBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, headerSize, dataSize)
+                    .order(StockBinaryCache.BYTE_ORDER).asDoubleBuffer();
+            return new NormalizedSeries(values, rows, bars.getMinArray(), bars.getMaxArray());
+        }
+    }
+
+    private static boolean matches(Path series, FeatureStore bars, long binLastModified) throws IOException {
+        try (FileChannel channel = FileChannel.open(series, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(headerSize).order(StockBinaryCache.BYTE_ORDER);
+            if (channel.read(header, 0) < headerSize) return false;
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != VECTOR_SIZE) return false;
+            int rows = header.getInt();
+            if (rows != bars.size() || header.getLong() != binLastModified) return false;
+            for (int k = 0; k < VECTOR_SIZE; k++) {
+                if (header.getDouble() != bars.getMinArray()[k]) return false;
+            }
+            for (int k = 0; k < VECTOR_SIZE; k++) {
+                if (header.getDouble() != bars.getMaxArray()[k]) return false;
+            }
+            return channel.size() >= headerSize + (long) rows * VECTOR_SIZE * Double.BYTES;
+        }
+    }
+
+    private static void write(FeatureStore bars, Path series, long binLastModified) throws IOException {
+        long start = System.nanoTime();
+        int rows = bars.size();
+        Path temporary = series.resolveSibling(series.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(headerSize).order(StockBinaryCache.BYTE_ORDER);
+            header.putInt(MAGIC).putInt(VERSION).putInt(VECTOR_SIZE).putInt(rows).putLong(binLastModified);
+            for (double min : bars.getMinArray()) header.putDouble(min);
+            for (double max : bars.getMaxArray()) header.putDouble(max);
+            header.flip();
+            writeFully(channel, header);
+
+            ByteBuffer chunk = ByteBuffer.allocateDirect(chunkRows * VECTOR_SIZE * Double.BYTES).order(StockBinaryCache.BYTE_ORDER);
+            for (int from = 0; from < rows; from += chunkRows) {
+                int length = Math.min(chunkRows, rows - from);
+                chunk.clear();
+                normalize(bars, from, from + length, chunk.asDoubleBuffer(), 0);
+                chunk.limit(length * VECTOR_SIZE * Double.BYTES);
+                writeFully(channel, chunk);
+            }
+        }
+        Files.move(temporary, series, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LoggingUtils.print(MessageFormat.format("Written normalized series {0}, {1} rows in {2} ms",
+                series, rows, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+}
@@ -0,0 +1,225 @@
+package com.packt.javadl.priceprediction.representation;
+
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
+
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Build the next mini-batches of another iterator on a background thread, at most prefetchSize of them are kept.
+ * <p>
+ * Producer stalls are the time the producer waited for a free slot (the training is the bottleneck),
+ * consumer stalls are the time the training waited for a mini-batch (the data preparation is the bottleneck).
+ */
+@SuppressWarnings("serial")
+public class PrefetchingDataSetIterator implements DataSetIterator, AutoCloseable {
+
+    /**
+     * marks the end of an epoch in the queue
+     */
+    private static final DataSet END = new DataSet();
+
+    private final DataSetIterator underlying;
+    private final BlockingQueue<DataSet> queue;
+
+    private Thread producer;
+    private volatile boolean running;
+    private volatile Throwable producerError;
+
+    /**
+     * mini-batch taken from the queue by hasNext and not returned yet
+     */
+    private DataSet nextDataSet;
+    private boolean epochFinished;
+
+    private final AtomicLong producerStallNanos = new AtomicLong();
+    private final AtomicLong consumerStallNanos = new AtomicLong();
+    private final AtomicLong producedBatches = new AtomicLong();
+    private long consumedBatches;
+
+    public PrefetchingDataSetIterator(DataSetIterator underlying, int prefetchSize) {
+        if (prefetchSize < 1) throw new IllegalArgumentException("Prefetch size must be at least 1");
+        this.underlying = underlying;
+        this.queue = new ArrayBlockingQueue<>(prefetchSize);
+        startProducer();
+    }
+
+    private void startProducer() {
+        running = true;
+        epochFinished = false;
+        nextDataSet = null;
+        producerError = null;
+        producer = new Thread(this::produce, "prefetch-" + underlying.getClass().getSimpleName());
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    private void produce() {
+        try {
+            while (running && underlying.hasNext()) {
+                DataSet dataSet = underlying.next();
+                producedBatches.incrementAndGet();
+                long start = System.nanoTime();
+                queue.put(dataSet);
+                producerStallNanos.addAndGet(System.nanoTime() - start);
+            }
+        } catch (InterruptedException e) {
+            return;
+        } catch (Throwable e) {
+            producerError = e;
+        }
+        try {
+            queue.put(END);
+        } catch (InterruptedException ignored) {
+            // stopped by reset or shutdown, nobody waits for the end marker
+        }
+    }
+
+    private void stopProducer() {
+        running = false;
+        producer.interrupt();
+        queue.clear();
+        try {
+            producer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        queue.clear();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextDataSet != null) return true;
+        if (epochFinished) return false;
+        try {
+            long start = System.nanoTime();
+            DataSet dataSet = queue.take();
+            consumerStallNanos.addAndGet(System.nanoTime() - start);
+            if (dataSet == END) {
+                epochFinished = true;
+                if (producerError != null) {
+                    throw new RuntimeException("Prefetching mini-batches failed", producerError);
+                }
+                return false;
+            }
+            nextDataSet = dataSet;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a mini-batch", e);
+        }
+    }
+
+    @Override
+    public DataSet next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        DataSet dataSet = nextDataSet;
+        nextDataSet = null;
+        consumedBatches++;
+        return dataSet;
+    }
+
+    /**
+     * mini-batches are built ahead with the batch size of the underlying iterator
+     */
+    @Override
+    public DataSet next(int num) {
+        if (num != underlying.batch()) {
+            throw new UnsupportedOperationException(MessageFormat.format("Mini-batches are prefetched with size {0}", underlying.batch()));
+        }
+        return next();
+    }
+
+    /**
+     * Stop the producer, drop the prefetched mini-batches, reset the underlying iterator and start again
+     */
+    @Override
+    public void reset() {
+        stopProducer();
+        underlying.reset();
+        startProducer();
+    }
+
+    @Override
+    public void close() {
+        stopProducer();
+    }
+
+    public long getProducerStallMillis() {
+        return producerStallNanos.get() / 1_000_000;
+    }
+
+    public long getConsumerStallMillis() {
+        return consumerStallNanos.get() / 1_000_000;
+    }
+
+    public void printStats() {
+        LoggingUtils.print(MessageFormat.format("Prefetching: {0} batches produced, {1} consumed, producer stalled {2} ms, consumer stalled {3} ms",
+                producedBatches.get(), consumedBatches, getProducerStallMillis(), getConsumerStallMillis()));
+    }
+
+    @Override
+    public int totalExamples() {
+        return underlying.totalExamples();
+    }
+
+    @Override
+    public int inputColumns() {
+        return underlying.inputColumns();
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return underlying.totalOutcomes();
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return underlying.resetSupported();
+    }
+
+    /**
+     * already asynchronous, DL4J must not wrap it again
+     */
+    @Override
+    public boolean asyncSupported() {
+        return false;
+    }
+
+    @Override
+    public int batch() {
+        return underlying.batch();
+    }
+
+    @Override
+    public int cursor() {
+        return underlying.cursor();
+    }
+
+    @Override
+    public int numExamples() {
+        return underlying.numExamples();
+    }
+
+    @Override
+    public void setPreProcessor(DataSetPreProcessor dataSetPreProcessor) {
+        throw new UnsupportedOperationException("Not Implemented");
+    }
+
+    @Override
+    public DataSetPreProcessor getPreProcessor() {
+        throw new UnsupportedOperationException("Not Implemented");
+    }
+
+    @Override
+    public List<String> getLabels() {
+        return underlying.getLabels();
+    }
+}
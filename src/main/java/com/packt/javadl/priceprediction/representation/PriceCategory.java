@@ -24,7 +24,11 @@ public enum PriceCategory {
     NO_DECISION(13, 13),
     EXECUTE(14, 14),
     NO_EXECUTE(15, 14),
-    ALL(16, -1);
+    ALL(16, -1),
+    /**
+     * model of the shared trunk multi-output graph, it predicts every feature like an ALL model
+     */
+    MULTI(-1, -1);
 
     public final int featureIndex;
     public final int csvIndex;
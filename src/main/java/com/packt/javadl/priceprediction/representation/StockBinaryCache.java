@@ -0,0 +1,178 @@
+package com.packt.javadl.priceprediction.representation;
+
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Binary cache of parsed bars, written next to the CSV file (data/AUD.csv -> data/AUD.bin) on the first load
+ * and memory-mapped on the following runs.
+ * <p>
+ * Layout (little endian):
+ * <pre>
+ * int magic, int version, int featuresCount, int rows,
+ * long csvSize, long csvLastModified,
+ * double[featuresCount] min, double[featuresCount] max,
+ * int symbolLength, byte[symbolLength] symbol, padding to 8 bytes
+ * long[rows] timestamps
+ * double[rows] feature 0 ... double[rows] feature featuresCount - 1
+ * </pre>
+ */
+public class StockBinaryCache {
+
+    private static final int MAGIC = 0x53544B42; // STKB
+    private static final int VERSION = 1;
+
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * rows written per chunk when serializing a column
+     */
+    private static final int chunkRows = 8192;
+
+    static class Header {
+        int rows;
+        long csvSize;
+        long csvLastModified;
+        double[] minArray = new double[VECTOR_SIZE];
+        double[] maxArray = new double[VECTOR_SIZE];
+        String symbol;
+        long dataOffset;
+    }
+
+    public static Path cacheFileFor(String csvFilename) {
+        String name = csvFilename.endsWith(".csv") ? csvFilename.substring(0, csvFilename.length() - 4) : csvFilename;
+        return Paths.get(name + ".bin");
+    }
+
+    /**
+     * Map the cache of the CSV file if it is up to date, otherwise parse the CSV and write the cache
+     */
+    public static FeatureStore load(String csvFilename, String symbol) throws IOException {
+        Path csv = Paths.get(csvFilename);
+        Path cache = cacheFileFor(csvFilename);
+        long csvSize = Files.size(csv);
+        long csvLastModified = Files.getLastModifiedTime(csv).toMillis();
+
+        if (Files.exists(cache)) {
+            Header header = readHeader(cache);
+            if (header != null && header.csvSize == csvSize && header.csvLastModified == csvLastModified && header.symbol.equals(symbol)) {
+                long start = System.nanoTime();
+                MappedFeatureStore store = new MappedFeatureStore(cache, header);
+                LoggingUtils.print(MessageFormat.format("Mapped binary cache {0}, {1} rows in {2} ms",
+                        cache, store.size(), (System.nanoTime() - start) / 1_000_000));
+                return store;
+            }
+            LoggingUtils.print(MessageFormat.format("Binary cache {0} is stale, parsing {1}", cache, csvFilename));
+        }
+
+        StockFeatureStore store = StockFeatureStore.readCsv(csvFilename, symbol);
+        try {
+            write(store, cache, csvSize, csvLastModified);
+        } catch (IOException | UnsupportedOperationException e) {
+            // the parsed bars are still usable, the next run parses the CSV again
+            LoggingUtils.print(MessageFormat.format("Binary cache {0} not written: {1}", cache, e.getMessage()));
+        }
+        return store;
+    }
+
+    public static MappedFeatureStore map(Path cache) throws IOException {
+        Header header = readHeader(cache);
+        if (header == null) {
+            throw new IOException(MessageFormat.format("{0} is not a stock binary cache", cache));
+        }
+        return new MappedFeatureStore(cache, header);
+    }
+
+    /**
+     * Write the store to a temporary file then move it in place, so readers never see a partial cache
+     */
+    public static void write(FeatureStore store, Path cache, long csvSize, long csvLastModified) throws IOException {
+        long start = System.nanoTime();
+        int rows = store.size();
+        byte[] symbolBytes = store.getSymbol().getBytes(StandardCharsets.UTF_8);
+        int headerSize = 4 * Integer.BYTES + 2 * Long.BYTES + 2 * VECTOR_SIZE * Double.BYTES + Integer.BYTES + symbolBytes.length;
+        headerSize = (headerSize + 7) & ~7;
+
+        Path temporary = cache.resolveSibling(cache.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(headerSize).order(BYTE_ORDER);
+            header.putInt(MAGIC).putInt(VERSION).putInt(VECTOR_SIZE).putInt(rows);
+            header.putLong(csvSize).putLong(csvLastModified);
+            for (double min : store.getMinArray()) header.putDouble(min);
+            for (double max : store.getMaxArray()) header.putDouble(max);
+            header.putInt(symbolBytes.length).put(symbolBytes);
+            header.position(headerSize).flip();
+            writeFully(channel, header);
+
+            ByteBuffer chunk = ByteBuffer.allocateDirect(chunkRows * Long.BYTES).order(BYTE_ORDER);
+            for (int from = 0; from < rows; from += chunkRows) {
+                int length = Math.min(chunkRows, rows - from);
+                chunk.clear();
+                for (int i = from; i < from + length; i++) chunk.putLong(store.getTimestamp(i));
+                chunk.flip();
+                writeFully(channel, chunk);
+            }
+
+            double[] values = new double[chunkRows];
+            for (int k = 0; k < VECTOR_SIZE; k++) {
+                for (int from = 0; from < rows; from += chunkRows) {
+                    int length = Math.min(chunkRows, rows - from);
+                    store.copyColumn(k, from, values, 0, length);
+                    chunk.clear();
+                    chunk.asDoubleBuffer().put(values, 0, length);
+                    chunk.limit(length * Double.BYTES);
+                    writeFully(channel, chunk);
+                }
+            }
+        }
+        Files.move(temporary, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LoggingUtils.print(MessageFormat.format("Written binary cache {0}, {1} rows in {2} ms",
+                cache, rows, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    /**
+     * @return null if the file is not a cache of the current version
+     */
+    static Header readHeader(Path cache) throws IOException {
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            ByteBuffer fixed = ByteBuffer.allocate(4 * Integer.BYTES + 2 * Long.BYTES + 2 * VECTOR_SIZE * Double.BYTES + Integer.BYTES).order(BYTE_ORDER);
+            if (channel.read(fixed, 0) < fixed.capacity()) return null;
+            fixed.flip();
+            if (fixed.getInt() != MAGIC || fixed.getInt() != VERSION || fixed.getInt() != VECTOR_SIZE) return null;
+
+            Header header = new Header();
+            header.rows = fixed.getInt();
+            header.csvSize = fixed.getLong();
+            header.csvLastModified = fixed.getLong();
+            for (int k = 0; k < VECTOR_SIZE; k++) header.minArray[k] = fixed.getDouble();
+            for (int k = 0; k < VECTOR_SIZE; k++) header.maxArray[k] = fixed.getDouble();
+            int symbolLength = fixed.getInt();
+
+            ByteBuffer symbol = ByteBuffer.allocate(symbolLength);
+            channel.read(symbol, fixed.capacity());
+            header.symbol = new String(symbol.array(), StandardCharsets.UTF_8);
+            header.dataOffset = (fixed.capacity() + symbolLength + 7) & ~7;
+
+            long expectedSize = header.dataOffset + (long) header.rows * (Long.BYTES + VECTOR_SIZE * Double.BYTES);
+            if (channel.size() < expectedSize) return null;
+            return header;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+}
@@ -0,0 +1,195 @@
+package com.packt.javadl.priceprediction.representation;
+
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Streaming reader for the stock CSV files, every line is parsed once straight into primitive features
+ * and min / max of each feature are computed in the same pass.
+ * <p>
+ * File Content:
+ * Currency,YYYYMMDD_HHMMSS,Open,High,Low,Close,Volume,WAP,Count,Minute,Tesla3,Tesla6,Tesla9,Decision,EXECUTE
+ * CHF,20200616  09:30:00,1.0574,1.0583,1.0573,1.0583,269,1.0578,111,30,0.408462,0.81675,1.225584,BUY,NO
+ */
+public class StockCsvReader {
+
+    /**
+     * Called for every parsed line, features array is reused between lines
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        void onRow(long timestamp, double[] features);
+    }
+
+    /**
+     * Currency and Date columns are not features
+     */
+    private static final int skippedColumns = 2;
+
+    /**
+     * Features before BUY are numeric, the remaining ones are one-hot encoded flags
+     */
+    public static final int NUMERIC_FEATURES = PriceCategory.BUY.featureIndex;
+
+    private final double[] minArray = new double[VECTOR_SIZE];
+    private final double[] maxArray = new double[VECTOR_SIZE];
+
+    private final double[] features = new double[VECTOR_SIZE];
+
+    public StockCsvReader() {
+        initializeMinMax(minArray, maxArray);
+    }
+
+    /**
+     * Read all the lines of the file (header excluded) and pass them to the handler
+     *
+     * @return number of rows read
+     */
+    public int read(String filename, RowHandler handler) throws IOException {
+        long start = System.nanoTime();
+        int rows = 0;
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8)) {
+            String line = reader.readLine(); // header
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                long timestamp = parseLine(line, features);
+                updateMinMax(features, minArray, maxArray);
+                handler.onRow(timestamp, features);
+                rows++;
+            }
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        LoggingUtils.print(MessageFormat.format("Finish Reading CSV {0}, {1} rows in {2} ms ({3} rows/sec)",
+                filename, rows, elapsedMillis, rows * 1000L / elapsedMillis));
+        return rows;
+    }
+
+    public double[] getMinArray() {
+        return minArray;
+    }
+
+    public double[] getMaxArray() {
+        return maxArray;
+    }
+
+    /**
+     * initialize max and min arrays, for normalization, one-hot features are always in [0, 1]
+     */
+    public static void initializeMinMax(double[] minArray, double[] maxArray) {
+        for (int i = 0; i < VECTOR_SIZE; i++) {
+            if (i < NUMERIC_FEATURES) {
+                maxArray[i] = Double.MIN_VALUE;
+                minArray[i] = Double.MAX_VALUE;
+            } else {
+                maxArray[i] = 1;
+                minArray[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return true if min / max changed
+     */
+    public static boolean updateMinMax(double[] nums, double[] minArray, double[] maxArray) {
+        boolean changed = false;
+        for (int i = 0; i < NUMERIC_FEATURES; i++) {
+            if (nums[i] > maxArray[i]) {
+                maxArray[i] = nums[i];
+                changed = true;
+            }
+            if (nums[i] < minArray[i]) {
+                minArray[i] = nums[i];
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Parse one CSV line into the features array
+     *
+     * @return the date column as a yyyyMMddHHmmss number
+     */
+    public static long parseLine(String line, double[] nums) {
+        long timestamp = 0;
+        int column = 0;
+        int start = 0;
+        int length = line.length();
+        while (start <= length) {
+            int end = line.indexOf(',', start);
+            if (end < 0) end = length;
+
+            // trim without allocating
+            int from = start;
+            int to = end;
+            while (from < to && Character.isWhitespace(line.charAt(from))) from++;
+            while (to > from && Character.isWhitespace(line.charAt(to - 1))) to--;
+
+            if (column == 1) {
+                timestamp = parseTimestamp(line, from, to);
+            } else if (column == PriceCategory.BUY.csvIndex) {
+                parseDecision(line, from, to, nums);
+            } else if (column == PriceCategory.EXECUTE.csvIndex) {
+                parseExecute(line, from, to, nums);
+            } else if (column >= skippedColumns && column - skippedColumns < NUMERIC_FEATURES) {
+                nums[column - skippedColumns] = from == to ? 0 : Double.parseDouble(line.substring(from, to));
+            }
+            column++;
+            start = end + 1;
+        }
+        if (column <= PriceCategory.BUY.csvIndex) parseDecision(line, 0, 0, nums);
+        if (column <= PriceCategory.EXECUTE.csvIndex) parseExecute(line, 0, 0, nums);
+        return timestamp;
+    }
+
+    /**
+     * "20200616  09:30:00" is parsed to 20200616093000
+     */
+    public static long parseTimestamp(String line, int from, int to) {
+        long timestamp = 0;
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') timestamp = timestamp * 10 + (c - '0');
+        }
+        return timestamp;
+    }
+
+    private static void parseDecision(String line, int from, int to, double[] nums) {
+        nums[PriceCategory.BUY.featureIndex] = 0;
+        nums[PriceCategory.SELL.featureIndex] = 0;
+        nums[PriceCategory.NO_DECISION.featureIndex] = 0;
+        if (from == to || matches(line, from, to, "no")) {
+            nums[PriceCategory.NO_DECISION.featureIndex] = 1;
+        } else if (matches(line, from, to, "sell")) {
+            nums[PriceCategory.SELL.featureIndex] = 1;
+        } else if (matches(line, from, to, "buy")) {
+            nums[PriceCategory.BUY.featureIndex] = 1;
+        } else {
+            throw new RuntimeException(MessageFormat.format("String Value {0} is not parsed Correctly", line.substring(from, to)));
+        }
+    }
+
+    private static void parseExecute(String line, int from, int to, double[] nums) {
+        if (from == to || matches(line, from, to, "no")) {
+            nums[PriceCategory.EXECUTE.featureIndex] = 0;
+            nums[PriceCategory.NO_EXECUTE.featureIndex] = 1;
+        } else if (matches(line, from, to, "execute")) {
+            nums[PriceCategory.EXECUTE.featureIndex] = 1;
+            nums[PriceCategory.NO_EXECUTE.featureIndex] = 0;
+        } else {
+            throw new RuntimeException(MessageFormat.format("String Value {0} is not parsed Correctly", line.substring(from, to)));
+        }
+    }
+
+    private static boolean matches(String line, int from, int to, String value) {
+        return to - from == value.length() && line.regionMatches(true, from, value, 0, value.length());
+    }
+}
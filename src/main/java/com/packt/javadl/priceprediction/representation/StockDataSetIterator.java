@@ -1,22 +1,28 @@
 package com.packt.javadl.priceprediction.representation;
 
-import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvException;
 import com.packt.javadl.priceprediction.utils.LoggingUtils;
-import com.packt.javadl.priceprediction.utils.Pair;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.dataset.api.DataSetPreProcessor;
 import org.nd4j.linalg.dataset.api.iterator.DataSetIterator;
 import org.nd4j.linalg.factory.Nd4j;
 
-import java.io.FileReader;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @SuppressWarnings("serial")
 public class StockDataSetIterator implements DataSetIterator {
+
+    /**
+     * Notified when bars appended to the store produce new windows
+     */
+    @FunctionalInterface
+    public interface WindowListener {
+        void onNewWindows(StockDataSetIterator iterator, int newTrainExamples, int newTestWindows);
+    }
+
     /**
      * category and its index
      */
@@ -31,44 +37,100 @@ public class StockDataSetIterator implements DataSetIterator {
     private final int predictLength = 1; // default 1, say, one day ahead prediction
 
     /**
-     * minimal values of each feature in stock dataset
+     * feature to be selected as a training target
      */
-    private final double[] minArray = new double[VECTOR_SIZE];
+    private final PriceCategory category;
+
     /**
-     * maximal values of each feature in stock dataset
+     * mini-batch offset, [0, offsetsCount) are the examples of the current epoch, [cursor, offsetsCount) are still to be used
      */
-    private final double[] maxArray = new double[VECTOR_SIZE];
+    private int[] exampleStartOffsets = new int[0];
+    private int offsetsCount;
+    private int cursor;
 
     /**
-     * feature to be selected as a training target
+     * examples are shuffled at each epoch with seed + epoch, sequential when null
      */
-    private final PriceCategory category;
+    private Long shuffleSeed;
+    private int epoch;
 
     /**
-     * mini-batch offset
+     * windows followed by an EXECUTE bar are used this number of times per epoch
      */
-    private final LinkedList<Integer> exampleStartOffsets = new LinkedList<>();
+    private int executeOversampling = 1;
 
     /**
-     * stock dataset for training
+     * start rows of the training windows, every row before the validation rows when null
      */
-    private final List<StockData> train;
+    private int[] trainingOffsets;
 
     /**
-     * adjusted stock dataset for testing
+     * share of the rows before the split kept for validation, at their end
      */
-    private final List<Pair<INDArray, INDArray>> test;
+    private double validationRatio;
+
+    /**
+     * stock dataset, rows [0, split) are used for training, the rest for testing
+     */
+    private final FeatureStore store;
+
+    /**
+     * snapshot of the store and its normalized series, the windows and min / max are read from them.
+     * Both are replaced by {@link #appendRows()} only, a mini-batch reads a single snapshot.
+     */
+    private volatile FeatureStore bars;
+    private volatile NormalizedSeries series;
+
+    private final double splitRatio;
+
+    private int split;
+
+    private final List<WindowListener> windowListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * rows of the store when the split was last updated
+     */
+    private int rows;
+
+    /**
+     * reused between full mini-batches. Every window, input and label rows, is copied from the normalized series
+     * in one bulk copy then put in the 'f' order of the mini-batch.
+     */
+    private final double[] inputBuffer;
+    private final double[] labelBuffer;
+    private final double[] window;
 
     public StockDataSetIterator(String filename, String symbol, int miniBatchSize, int exampleLength, double splitRatio, PriceCategory category) {
-        List<StockData> stockDataList = readStockDataFromFile(filename, symbol);
+        this(readStockDataFromFile(filename, symbol), miniBatchSize, exampleLength, splitRatio, category);
+    }
+
+    public StockDataSetIterator(FeatureStore store, int miniBatchSize, int exampleLength, double splitRatio, PriceCategory category) {
+        this(store, store.snapshot(), null, miniBatchSize, exampleLength, splitRatio, category);
+    }
+
+    /**
+     * Share the series already normalized for the store, eg between the iterators of the same symbol
+     */
+    public StockDataSetIterator(FeatureStore store, NormalizedSeries series, int miniBatchSize, int exampleLength, double splitRatio, PriceCategory category) {
+        this(store, store.snapshot(), series, miniBatchSize, exampleLength, splitRatio, category);
+    }
+
+    private StockDataSetIterator(FeatureStore store, FeatureStore bars, NormalizedSeries series, int miniBatchSize, int exampleLength,
+                                 double splitRatio, PriceCategory category) {
+        this.store = store;
+        this.bars = bars;
+        this.series = series == null ? NormalizedSeries.of(bars) : series.append(bars);
         this.miniBatchSize = miniBatchSize;
         this.exampleLength = exampleLength;
         this.category = category;
-        int split = (int) Math.round(stockDataList.size() * splitRatio);
+        this.splitRatio = splitRatio;
+        split = (int) Math.round(bars.size() * splitRatio);
         LoggingUtils.print(MessageFormat.format("Splitting data at index {0} for training and testing", split));
 
-        train = stockDataList.subList(0, split);
-        test = generateTestDataSet(stockDataList.subList(split, stockDataList.size()));
+        rows = bars.size();
+        inputBuffer = new double[miniBatchSize * VECTOR_SIZE * exampleLength];
+        labelBuffer = new double[miniBatchSize * totalOutcomes() * exampleLength];
+        window = new double[(exampleLength + predictLength) * VECTOR_SIZE];
 
         initializeOffsets();
     }
@@ -77,87 +139,247 @@ public class StockDataSetIterator implements DataSetIterator {
      * initialize the mini-batch offsets
      */
     private void initializeOffsets() {
-        exampleStartOffsets.clear();
+        offsetsCount = 0;
+        cursor = 0;
+        int window = exampleLength + predictLength;
+        if (trainingOffsets != null) {
+            for (int startIdx : trainingOffsets) {
+                addOffset(startIdx);
+            }
+        } else {
+            for (int i = 0; i < validationStart(split) - window; i++) {
+                addOffset(i);
+            }
+        }
+        if (shuffleSeed != null) {
+            shuffleOffsets(new Random(shuffleSeed + epoch));
+        }
+    }
+
+    private void addOffset(int startIdx) {
+        int copies = executeOversampling > 1 && bars.getValue(startIdx + exampleLength, PriceCategory.EXECUTE.featureIndex) == 1 ? executeOversampling : 1;
+        if (offsetsCount + copies > exampleStartOffsets.length) {
+            exampleStartOffsets = Arrays.copyOf(exampleStartOffsets, Math.max(offsetsCount + copies, exampleStartOffsets.length * 2));
+        }
+        for (int i = 0; i < copies; i++) {
+            exampleStartOffsets[offsetsCount++] = startIdx;
+        }
+    }
+
+    /**
+     * Fisher-Yates shuffle of the examples
+     */
+    private void shuffleOffsets(Random random) {
+        for (int i = offsetsCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int offset = exampleStartOffsets[i];
+            exampleStartOffsets[i] = exampleStartOffsets[j];
+            exampleStartOffsets[j] = offset;
+        }
+    }
+
+    /**
+     * Shuffle the examples at every epoch, the order only depends on the seed and the epoch.
+     * Restarts the current epoch.
+     */
+    public synchronized void setShuffleSeed(Long shuffleSeed) {
+        this.shuffleSeed = shuffleSeed;
+        initializeOffsets();
+    }
+
+    /**
+     * Use the windows whose next bar is an EXECUTE one this number of times per epoch, 1 to disable.
+     * Restarts the current epoch.
+     */
+    public synchronized void setExecuteOversampling(int executeOversampling) {
+        if (executeOversampling < 1) throw new IllegalArgumentException("Oversampling factor must be at least 1");
+        this.executeOversampling = executeOversampling;
+        initializeOffsets();
+    }
+
+    /**
+     * Keep the last rows before the split out of the training windows, for early stopping and model selection,
+     * so the test windows are only used for the final score. 0 to train on every row before the split.
+     * Restarts the current epoch.
+     */
+    public synchronized void setValidationRatio(double validationRatio) {
+        if (validationRatio < 0 || validationRatio >= 1) {
+            throw new IllegalArgumentException(MessageFormat.format("Validation ratio {0} is not in [0, 1)", validationRatio));
+        }
+        this.validationRatio = validationRatio;
+        if (trainingOffsets != null) checkTrainingOffsets(trainingOffsets);
+        initializeOffsets();
+    }
+
+    /**
+     * Train on these windows only, given by their start row, eg the windows touching new bars when fine-tuning.
+     * null to use every window before the validation rows again. Restarts the current epoch.
+     */
+    public synchronized void setTrainingOffsets(int[] trainingOffsets) {
+        if (trainingOffsets != null) checkTrainingOffsets(trainingOffsets);
+        this.trainingOffsets = trainingOffsets == null ? null : trainingOffsets.clone();
+        initializeOffsets();
+    }
+
+    private void checkTrainingOffsets(int[] trainingOffsets) {
+        int trainingEnd = validationStart(split);
         int window = exampleLength + predictLength;
-        for (int i = 0; i < train.size() - window; i++) {
-            exampleStartOffsets.add(i);
+        for (int startIdx : trainingOffsets) {
+            if (startIdx < 0 || startIdx >= trainingEnd - window) {
+                throw new IllegalArgumentException(MessageFormat.format("Window {0} is not before the validation rows, row {1}", startIdx, trainingEnd));
+            }
+        }
+    }
+
+    /**
+     * @return first validation row, the training rows are before it
+     */
+    private int validationStart(int split) {
+        return split - (int) Math.round(split * validationRatio);
+    }
+
+    public void addWindowListener(WindowListener listener) {
+        windowListeners.add(listener);
+    }
+
+    /**
+     * Take a new snapshot of the store and update the split and the training offsets after bars were appended to it.
+     * Only the new bars are normalized, unless they changed min / max.
+     */
+    public void appendRows() {
+        int newTrainExamples;
+        int newTestWindows;
+        synchronized (this) {
+            int window = exampleLength + predictLength;
+            bars = store.snapshot();
+            series = series.append(bars);
+            int size = bars.size();
+            int newSplit = (int) Math.round(size * splitRatio);
+            int previousTestEnd = split + testWindows(split, rows);
+            rows = size;
+
+            // windows now before the validation rows become training examples of the current epoch
+            int previousTrainExamples = Math.max(0, validationStart(split) - window);
+            newTrainExamples = Math.max(0, validationStart(newSplit) - window - previousTrainExamples);
+            for (int i = previousTrainExamples; i < validationStart(newSplit) - window; i++) {
+                addOffset(i);
+            }
+
+            int testEnd = newSplit + testWindows(newSplit, size);
+            newTestWindows = Math.max(0, testEnd - Math.max(newSplit, previousTestEnd));
+            split = newSplit;
+        }
+        for (WindowListener listener : windowListeners) {
+            listener.onNewWindows(this, newTrainExamples, newTestWindows);
         }
     }
 
+    /**
+     * @return the test windows after the split, built lazily on access
+     */
+    public synchronized TestDataSource getTestDataSet() {
+        FeatureStore bars = this.bars;
+        return new TestDataSource(bars, series, split, testWindows(split, bars.size()), exampleLength, category);
+    }
 
-    // TODO: return TestData
-    public List<Pair<INDArray, INDArray>> getTestDataSet() {
-        return test;
+    /**
+     * @return the windows of the validation rows, between the training windows and the split, empty without validation ratio
+     */
+    public synchronized TestDataSource getValidationDataSet() {
+        int from = validationStart(split);
+        return new TestDataSource(bars, series, from, testWindows(from, split), exampleLength, category);
+    }
+
+    private int testWindows(int from, int to) {
+        return Math.max(0, to - from - exampleLength - predictLength);
     }
 
     public double[] getMaxArray() {
-        return maxArray;
+        return series.getMaxArray();
     }
 
     public double[] getMinArray() {
-        return minArray;
+        return series.getMinArray();
     }
 
     public double getMaxNum(PriceCategory category) {
-        return maxArray[category.featureIndex];
+        return getMaxArray()[category.featureIndex];
     }
 
     public double getMinNum(PriceCategory category) {
-        return minArray[category.featureIndex];
+        return getMinArray()[category.featureIndex];
+    }
+
+    /**
+     * @return the bars the windows are currently built from
+     */
+    public FeatureStore getStore() {
+        return bars;
+    }
+
+    /**
+     * @return the normalized bars the windows are currently built from
+     */
+    public NormalizedSeries getSeries() {
+        return series;
+    }
+
+    public PriceCategory getCategory() {
+        return category;
+    }
+
+    public int getExampleLength() {
+        return exampleLength;
+    }
+
+    /**
+     * @return first row of the store that is not used for training
+     */
+    public synchronized int getSplit() {
+        return split;
     }
 
 
     // Everything should be normalized
-    public DataSet next(int num) {
-        if (exampleStartOffsets.size() == 0) throw new NoSuchElementException();
-        int actualMiniBatchSize = Math.min(num, exampleStartOffsets.size());
-        INDArray input = Nd4j.create(new int[]{actualMiniBatchSize, VECTOR_SIZE, exampleLength}, 'f');
-        INDArray label;
+    public synchronized DataSet next(int num) {
+        if (cursor >= offsetsCount) throw new NoSuchElementException();
+        int actualMiniBatchSize = Math.min(num, offsetsCount - cursor);
+        int labelSize = category == PriceCategory.ALL ? VECTOR_SIZE : predictLength;
 
-        if (category.equals(PriceCategory.ALL))
-            label = Nd4j.create(new int[]{actualMiniBatchSize, VECTOR_SIZE, exampleLength}, 'f');
-        else
-            label = Nd4j.create(new int[]{actualMiniBatchSize, predictLength, exampleLength}, 'f');
+        double[] inputData = batchBuffer(inputBuffer, actualMiniBatchSize * VECTOR_SIZE * exampleLength);
+        double[] labelData = batchBuffer(labelBuffer, actualMiniBatchSize * labelSize * exampleLength);
+        NormalizedSeries series = this.series;
 
+        // Arrays are filled in 'f' order: [index, k, c] is at index + miniBatch * (k + features * c)
         for (int index = 0; index < actualMiniBatchSize; index++) {
-            int startIdx = exampleStartOffsets.removeFirst();
-            int endIdx = startIdx + exampleLength;
-            StockData curData = train.get(startIdx);
-            StockData nextData;
-            for (int i = startIdx; i < endIdx; i++) {
-                int c = i - startIdx;
-
-                // Input Features
-                for (int k = 0; k < VECTOR_SIZE; k++) {
-                    PriceCategory priceCategory = PriceCategory.fromFeatureIndex(k);
-                    if (priceCategory != PriceCategory.ALL) {
-                        input.putScalar(new int[]{index, k, c}, getNormalizedValue(curData, priceCategory));
-                    }
-                }
-
-                // Label features : 1 day ahead prediction
-                nextData = train.get(i + 1);
-                if (category == PriceCategory.ALL) {
-                    // Put all the features as labels
-                    for (int k = 0; k < VECTOR_SIZE; k++) {
-                        PriceCategory priceCategory = PriceCategory.fromFeatureIndex(k);
-                        if (priceCategory != PriceCategory.ALL) {
-                            label.putScalar(new int[]{index, k, c}, getNormalizedValue(nextData, priceCategory));
-                        }
-                    }
-
-                } else {
-                    label.putScalar(new int[]{index, 0, c}, getNormalizedValue(nextData, category));
+            int startIdx = exampleStartOffsets[cursor++];
+            // the input rows and the label rows, 1 day ahead prediction, already normalized in one bulk copy
+            series.copyRows(startIdx, exampleLength + predictLength, window, 0);
+            NormalizedSeries.putWindow(window, 0, exampleLength, index, actualMiniBatchSize, inputData);
+            if (category == PriceCategory.ALL) {
+                NormalizedSeries.putWindow(window, 1, exampleLength, index, actualMiniBatchSize, labelData);
+            } else {
+                for (int c = 0; c < exampleLength; c++) {
+                    labelData[index + actualMiniBatchSize * c] = window[(c + 1) * VECTOR_SIZE + category.featureIndex];
                 }
-                curData = nextData;
             }
-            if (exampleStartOffsets.size() == 0) break;
         }
+
+        // a single bulk copy per array into ND4J
+        INDArray input = Nd4j.create(inputData, new int[]{actualMiniBatchSize, VECTOR_SIZE, exampleLength}, 'f');
+        INDArray label = Nd4j.create(labelData, new int[]{actualMiniBatchSize, labelSize, exampleLength}, 'f');
         return new DataSet(input, label);
     }
 
-    public int totalExamples() {
-        return train.size() - exampleLength - predictLength;
+    /**
+     * @return the reusable buffer of a full mini-batch, or a new array of the exact length for a smaller one
+     */
+    private static double[] batchBuffer(double[] buffer, int length) {
+        return buffer.length == length ? buffer : new double[length];
+    }
+
+    public synchronized int totalExamples() {
+        return offsetsCount;
     }
 
     public int inputColumns() {
@@ -171,14 +393,19 @@ public class StockDataSetIterator implements DataSetIterator {
     }
 
     public boolean resetSupported() {
-        return false;
+        return true;
     }
 
+    /**
+     * {@link PrefetchingDataSetIterator} is the only prefetcher, an AsyncDataSetIterator added by fit would race
+     * the shuffle of reset
+     */
     public boolean asyncSupported() {
         return false;
     }
 
-    public void reset() {
+    public synchronized void reset() {
+        epoch++;
         initializeOffsets();
     }
 
@@ -186,8 +413,8 @@ public class StockDataSetIterator implements DataSetIterator {
         return miniBatchSize;
     }
 
-    public int cursor() {
-        return totalExamples() - exampleStartOffsets.size();
+    public synchronized int cursor() {
+        return cursor;
     }
 
     public int numExamples() {
@@ -206,230 +433,49 @@ public class StockDataSetIterator implements DataSetIterator {
         throw new UnsupportedOperationException("Not Implemented");
     }
 
-    public boolean hasNext() {
-        return exampleStartOffsets.size() > 0;
+    public synchronized boolean hasNext() {
+        return cursor < offsetsCount;
     }
 
     public DataSet next() {
         return next(miniBatchSize);
     }
 
-    // Input should be normalized
-    // Label should not be normalized => Used directly for comparison
-    private List<Pair<INDArray, INDArray>> generateTestDataSet(List<StockData> stockDataList) {
-        int window = exampleLength + predictLength;
-        List<Pair<INDArray, INDArray>> test = new ArrayList<>();
-        for (int i = 0; i < stockDataList.size() - window; i++) {
-            INDArray input = Nd4j.create(new int[]{exampleLength, VECTOR_SIZE}, 'f');
-            for (int j = i; j < i + exampleLength; j++) {
-                StockData stock = stockDataList.get(j);
-                for (int k = 0; k < VECTOR_SIZE; k++) {
-                    PriceCategory priceCategory = PriceCategory.fromFeatureIndex(k);
-                    if (priceCategory != PriceCategory.ALL) {
-                        input.putScalar(new int[]{j - i, k}, getNormalizedValue(stock, priceCategory));
-                    }
-                }
-            }
-
-            // Label features : 1 day ahead prediction
-            StockData stock = stockDataList.get(i + exampleLength);
-            INDArray label;
-            if (category == PriceCategory.ALL) {
-                label = Nd4j.create(new int[]{VECTOR_SIZE}, 'f'); // ordering is set as 'f', faster construct
-                for (int k = 0; k < VECTOR_SIZE; k++) {
-                    PriceCategory priceCategory = PriceCategory.fromFeatureIndex(k);
-                    if (priceCategory != PriceCategory.ALL) {
-                        label.putScalar(new int[]{k}, getOrdinaryValue(stock, priceCategory));
-                    }
-                }
-            } else {
-                label = Nd4j.create(new int[]{1}, 'f');
-                label.putScalar(new int[]{0}, getOrdinaryValue(stock, category));
-            }
-            test.add(new Pair<>(input, label));
-        }
-        return test;
-    }
-
-
     /**
      * @param filename File Content:
      *                 Currency,YYYYMMDD_HHMMSS,Open,High,Low,Close,Volume,WAP,Count,Minute,Tesla3,Tesla6,Tesla9,Decision,EXECUTE
      *                 CHF,20200616  09:30:00,1.0574,1.0583,1.0573,1.0583,269,1.0578,111,30,0.408462,0.81675,1.225584,BUY,NO
      * @param symbol
-     * @return List<StockData> parsed content
+     * @return FeatureStore parsed content, memory-mapped from the binary cache when it is up to date
      */
-
-    // TODO: change features, add column execute, not execute, buy, sell, hold, no decision
-    @SuppressWarnings("resource")
-    private List<StockData> readStockDataFromFile(String filename, String symbol) {
-        List<StockData> stockDataList = new ArrayList<>();
+    private static FeatureStore readStockDataFromFile(String filename, String symbol) {
+        FeatureStore store;
         try {
-            for (int i = 0; i < maxArray.length; i++) {
-                // initialize max and min arrays, for normalization
-                maxArray[i] = Double.MIN_VALUE;
-                minArray[i] = Double.MAX_VALUE;
-                if (i == PriceCategory.BUY.featureIndex ||
-                        i == PriceCategory.SELL.featureIndex ||
-                        i == PriceCategory.NO_DECISION.featureIndex ||
-                        i == PriceCategory.EXECUTE.featureIndex ||
-                        i == PriceCategory.NO_EXECUTE.featureIndex
-                ) {
-                    maxArray[i] = 1;
-                    minArray[i] = 0;
-                }
-            }
-            // load all elements in a list,
-            List<String[]> list = new CSVReader(new FileReader(filename)).readAll();
-            System.out.println(MessageFormat.format("FileContent Reading, Lines Count {0}", list.size()));
-            boolean headerSkipped = false;
-            boolean firstLinePrinted = false;
-            int skippedColumns = 2;
-            for (int j = 0; j < list.size(); j++) {
-                String[] arr = list.get(j);
-                if (!headerSkipped) {
-                    headerSkipped = true;
-                    continue;
-                }
-                double[] nums = new double[VECTOR_SIZE];
-
-                for (int i = 0; i < arr.length - skippedColumns; i++) {
-                    var value = arr[i + skippedColumns].trim().toLowerCase();
-
-                    // Parsing Decision Column
-                    if (i + skippedColumns == PriceCategory.BUY.csvIndex) {
-                        if (value.isEmpty() || value.isBlank() || value.equals("sell") || value.equals("buy") || value.equals("no")
-                        ) {
-                            switch (value) {
-                                case "no", "" -> {
-                                    nums[PriceCategory.BUY.featureIndex] = 0;
-                                    nums[PriceCategory.SELL.featureIndex] = 0;
-                                    nums[PriceCategory.NO_DECISION.featureIndex] = 1;
-                                }
-                                case "sell" -> {
-                                    nums[PriceCategory.BUY.featureIndex] = 0;
-                                    nums[PriceCategory.SELL.featureIndex] = 1;
-                                    nums[PriceCategory.NO_DECISION.featureIndex] = 0;
-                                }
-                                case "buy" -> {
-                                    nums[PriceCategory.BUY.featureIndex] = 1;
-                                    nums[PriceCategory.SELL.featureIndex] = 0;
-                                    nums[PriceCategory.NO_DECISION.featureIndex] = 0;
-                                }
-                                default -> throw new RuntimeException(MessageFormat.format("String Value {0} is not parsed Correctly", value));
-                            }
-                        } else {
-                            throw new RuntimeException(MessageFormat.format("String Value {0} is not parsed Correctly", value));
-                        }
-
-                        // Parsing Execute Column
-                    } else if (i + skippedColumns == PriceCategory.EXECUTE.csvIndex) {
-                        if (value.isEmpty() || value.isBlank() || value.equals("execute") || value.equals("no")
-                        ) {
-                            switch (value) {
-                                case "no", "" -> {
-                                    nums[PriceCategory.EXECUTE.featureIndex] = 0;
-                                    nums[PriceCategory.NO_EXECUTE.featureIndex] = 1;
-                                }
-                                case "execute" -> {
-                                    nums[PriceCategory.EXECUTE.featureIndex] = 1;
-                                    nums[PriceCategory.NO_EXECUTE.featureIndex] = 0;
-                                }
-                                default -> throw new RuntimeException(MessageFormat.format("String Value {0} is not parsed Correctly", value));
-                            }
-                        } else {
-                            throw new RuntimeException(MessageFormat.format("String Value {0} is not parsed Correctly", value));
-                        }
-
-                    } else {
-
-                        if (value.isEmpty() || value.isBlank()) {
-                            nums[i] = 0;
-                        } else {
-                            nums[i] = Double.parseDouble(value);
-                        }
-                        if (nums[i] > maxArray[i]) maxArray[i] = nums[i];
-                        if (nums[i] < minArray[i]) minArray[i] = nums[i];
-                    }
-                }
-
-                var stockData = new StockData(
-                        arr[0], arr[1], // Currency, Date
-                        nums[0], nums[1], nums[2], nums[3], nums[4], // Open, High, Low, Close, Volume
-                        nums[5], nums[6], nums[7], // WAP, Count, Minute
-                        nums[8], nums[9], nums[10], // Tesla3, Tesla6, Tesla9
-                        nums[11], nums[12], // buy, sell
-                        nums[14] // execute
-                );
-                if (!firstLinePrinted) {
-                    LoggingUtils.print(MessageFormat.format("For verification: Features arrays {0}", Arrays.toString(nums)));
-                    LoggingUtils.print(MessageFormat.format("For verification: Stock {0}", stockData));
-                    firstLinePrinted = true;
-                }
-                stockDataList.add(stockData);
-            }
-        } catch (IOException | CsvException e) {
+            store = StockBinaryCache.load(filename, symbol);
+        } catch (IOException e) {
             e.printStackTrace();
+            store = new StockFeatureStore(symbol);
+        }
+        if (store.size() > 0) {
+            double[] nums = new double[VECTOR_SIZE];
+            for (int k = 0; k < VECTOR_SIZE; k++) nums[k] = store.getValue(0, k);
+            LoggingUtils.print(MessageFormat.format("For verification: Features arrays {0}", Arrays.toString(nums)));
         }
-        System.out.println(MessageFormat.format("Finish Reading CSV, Stock Dataset Size {0}", stockDataList.size()));
-        return stockDataList;
-    }
-
-    public static int decisionToFeature(PriceCategory priceCategory, StockData stock) {
-        if (priceCategory == PriceCategory.BUY && stock.getBuy() == 1) return 1;
-        if (priceCategory == PriceCategory.SELL && stock.getSell() == 1) return 1;
-        if (priceCategory == PriceCategory.NO_DECISION && stock.getBuy() == 0 && stock.getSell() == 0) return 1;
-        return 0;
-    }
-
-
-    public static int executeToFeature(PriceCategory priceCategory, StockData stock) {
-        if (priceCategory == PriceCategory.EXECUTE && stock.getExecute() == 1) return 1;
-        if (priceCategory == PriceCategory.NO_EXECUTE && stock.getExecute() == 0) return 1;
-        return 0;
-    }
-
-
-    public double getOrdinaryValue(StockData stock, PriceCategory priceCategory) {
-
-        return switch (priceCategory) {
-            case OPEN -> stock.getOpen();
-            case HIGH -> stock.getHigh();
-            case LOW -> stock.getLow();
-            case CLOSE -> stock.getClose();
-            case VOLUME -> stock.getVolume();
-            case WAP -> stock.getWap();
-            case COUNT -> stock.getCount();
-            case MINUTE -> stock.getMinute();
-            case TESLA3 -> stock.getTesla3();
-            case TESLA6 -> stock.getTesla6();
-            case TESLA9 -> stock.getTesla9();
-            case BUY, SELL, NO_DECISION -> decisionToFeature(priceCategory, stock);
-            case EXECUTE, NO_EXECUTE -> executeToFeature(priceCategory, stock);
-            default -> throw new RuntimeException(MessageFormat.format("Price Category {0} is not parsed Correctly", priceCategory));
-        };
-    }
-
-    public double getNormalizedValue(StockData stock, PriceCategory priceCategory) {
-
-        int index = priceCategory.featureIndex;
-        return switch (priceCategory) {
-            case OPEN -> (stock.getOpen() - minArray[index]) / (maxArray[index] - minArray[index]);
-            case HIGH -> (stock.getHigh() - minArray[index]) / (maxArray[index] - minArray[index]);
-            case LOW -> (stock.getLow() - minArray[index]) / (maxArray[index] - minArray[index]);
-            case CLOSE -> (stock.getClose() - minArray[index]) / (maxArray[index] - minArray[index]);
-            case VOLUME -> (stock.getVolume() - minArray[index]) / (maxArray[index] - minArray[index]);
-            case WAP -> (stock.getWap() - minArray[index]) / (maxArray[index] - minArray[index]);
-            case COUNT -> (stock.getCount() - minArray[index]) / (maxArray[index] - minArray[index]);
-            case MINUTE -> (stock.getMinute() - minArray[index]) / (maxArray[index] - minArray[index]);
-            case TESLA3 -> (stock.getTesla3() - minArray[index]) / (maxArray[index] - minArray[index]);
-            case TESLA6 -> (stock.getTesla6() - minArray[index]) / (maxArray[index] - minArray[index]);
-            case TESLA9 -> (stock.getTesla9() - minArray[index]) / (maxArray[index] - minArray[index]);
-            case BUY, NO_DECISION, SELL -> decisionToFeature(priceCategory, stock);
-            case EXECUTE, NO_EXECUTE -> executeToFeature(priceCategory, stock);
-            default -> throw new RuntimeException(MessageFormat.format("Price Category {0} is not defined", priceCategory));
-        };
+        System.out.println(MessageFormat.format("Finish Reading CSV, Stock Dataset Size {0}", store.size()));
+        return store;
     }
-}
 
+    public double getOrdinaryValue(int row, PriceCategory priceCategory) {
+        if (priceCategory == PriceCategory.ALL) {
+            throw new RuntimeException(MessageFormat.format("Price Category {0} is not parsed Correctly", priceCategory));
+        }
+        return bars.getValue(row, priceCategory.featureIndex);
+    }
 
+    /**
+     * one-hot features have min 0 and max 1, so they are returned unchanged
+     */
+    public double getNormalizedValue(int row, int featureIndex) {
+        return series.get(row, featureIndex);
+    }
+}
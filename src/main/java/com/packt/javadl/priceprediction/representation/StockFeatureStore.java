@@ -0,0 +1,214 @@
+package com.packt.javadl.priceprediction.representation;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * On-heap {@link FeatureStore}, each feature is kept in its own contiguous double array.
+ * <p>
+ * Bars can be appended while other threads read: every append publishes a new immutable {@link Snapshot} through a
+ * volatile field. Appends only write after the last published row and min / max arrays are replaced, never updated,
+ * so a snapshot stays consistent while later bars are added.
+ */
+public class StockFeatureStore implements FeatureStore {
+
+    private static final int initialCapacity = 4096;
+
+    private volatile Snapshot snapshot;
+
+    public StockFeatureStore(String symbol) {
+        this(symbol, initialCapacity);
+    }
+
+    public StockFeatureStore(String symbol, int capacity) {
+        capacity = Math.max(capacity, 1);
+        double[][] columns = new double[VECTOR_SIZE][];
+        for (int k = 0; k < VECTOR_SIZE; k++) {
+            columns[k] = new double[capacity];
+        }
+        double[] minArray = new double[VECTOR_SIZE];
+        double[] maxArray = new double[VECTOR_SIZE];
+        StockCsvReader.initializeMinMax(minArray, maxArray);
+        snapshot = new Snapshot(symbol, new long[capacity], columns, 0, minArray, maxArray);
+    }
+
+    /**
+     * Load a whole CSV file in a single pass
+     */
+    public static StockFeatureStore readCsv(String filename, String symbol) throws IOException {
+        StockFeatureStore store = new StockFeatureStore(symbol);
+        new StockCsvReader().read(filename, store::append);
+        store.trimToSize();
+        return store;
+    }
+
+    /**
+     * Append one bar, features are copied into the columns
+     *
+     * @return true if min / max of a feature changed
+     */
+    public synchronized boolean append(long timestamp, double[] features) {
+        Snapshot current = snapshot;
+        int size = current.size;
+        long[] timestamps = current.timestamps;
+        double[][] columns = current.columns;
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            columns = grow(columns, size * 2);
+        }
+        timestamps[size] = timestamp;
+        for (int k = 0; k < VECTOR_SIZE; k++) {
+            columns[k][size] = features[k];
+        }
+
+        double[] minArray = current.minArray;
+        double[] maxArray = current.maxArray;
+        boolean changed = outsideMinMax(features, minArray, maxArray);
+        if (changed) {
+            minArray = minArray.clone();
+            maxArray = maxArray.clone();
+            StockCsvReader.updateMinMax(features, minArray, maxArray);
+        }
+        snapshot = new Snapshot(current.symbol, timestamps, columns, size + 1, minArray, maxArray);
+        return changed;
+    }
+
+    public synchronized void trimToSize() {
+        Snapshot current = snapshot;
+        int capacity = Math.max(current.size, 1);
+        if (capacity < current.timestamps.length) {
+            snapshot = new Snapshot(current.symbol, Arrays.copyOf(current.timestamps, capacity), grow(current.columns, capacity),
+                    current.size, current.minArray, current.maxArray);
+        }
+    }
+
+    /**
+     * @return copies of the columns, the arrays of published snapshots are left untouched
+     */
+    private static double[][] grow(double[][] columns, int capacity) {
+        double[][] copy = new double[VECTOR_SIZE][];
+        for (int k = 0; k < VECTOR_SIZE; k++) {
+            copy[k] = Arrays.copyOf(columns[k], capacity);
+        }
+        return copy;
+    }
+
+    private static boolean outsideMinMax(double[] features, double[] minArray, double[] maxArray) {
+        for (int k = 0; k < StockCsvReader.NUMERIC_FEATURES; k++) {
+            if (features[k] > maxArray[k] || features[k] < minArray[k]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the bars appended so far, unchanged by later appends
+     */
+    @Override
+    public FeatureStore snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return the backing array of a feature, only the first {@link #size()} values are meaningful
+     */
+    public double[] getColumn(int featureIndex) {
+        return snapshot.columns[featureIndex];
+    }
+
+    @Override
+    public String getSymbol() {
+        return snapshot.symbol;
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size;
+    }
+
+    @Override
+    public long getTimestamp(int row) {
+        return snapshot.getTimestamp(row);
+    }
+
+    @Override
+    public double getValue(int row, int featureIndex) {
+        return snapshot.getValue(row, featureIndex);
+    }
+
+    @Override
+    public void copyColumn(int featureIndex, int fromRow, double[] destination, int destinationOffset, int length) {
+        snapshot.copyColumn(featureIndex, fromRow, destination, destinationOffset, length);
+    }
+
+    @Override
+    public double[] getMinArray() {
+        return snapshot.minArray;
+    }
+
+    @Override
+    public double[] getMaxArray() {
+        return snapshot.maxArray;
+    }
+
+    /**
+     * Immutable view of the first {@link #size()} bars, the arrays may be longer and shared with later snapshots
+     */
+    private static final class Snapshot implements FeatureStore {
+
+        private final String symbol;
+        private final long[] timestamps;
+        private final double[][] columns;
+        private final int size;
+        private final double[] minArray;
+        private final double[] maxArray;
+
+        private Snapshot(String symbol, long[] timestamps, double[][] columns, int size, double[] minArray, double[] maxArray) {
+            this.symbol = symbol;
+            this.timestamps = timestamps;
+            this.columns = columns;
+            this.size = size;
+            this.minArray = minArray;
+            this.maxArray = maxArray;
+        }
+
+        @Override
+        public String getSymbol() {
+            return symbol;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long getTimestamp(int row) {
+            if (row >= size) throw new IndexOutOfBoundsException(row);
+            return timestamps[row];
+        }
+
+        @Override
+        public double getValue(int row, int featureIndex) {
+            if (row >= size) throw new IndexOutOfBoundsException(row);
+            return columns[featureIndex][row];
+        }
+
+        @Override
+        public void copyColumn(int featureIndex, int fromRow, double[] destination, int destinationOffset, int length) {
+            if (fromRow + length > size) throw new IndexOutOfBoundsException(fromRow + length);
+            System.arraycopy(columns[featureIndex], fromRow, destination, destinationOffset, length);
+        }
+
+        @Override
+        public double[] getMinArray() {
+            return minArray;
+        }
+
+        @Override
+        public double[] getMaxArray() {
+            return maxArray;
+        }
+    }
+}
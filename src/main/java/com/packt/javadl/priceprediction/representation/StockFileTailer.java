@@ -0,0 +1,155 @@
+package com.packt.javadl.priceprediction.representation;
+
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Follow the end of a growing CSV file, only the lines appended since the last poll are parsed.
+ * New bars are appended to the store and the registered iterators update their windows.
+ * <pre>
+ * StockFeatureStore store = new StockFeatureStore("AUD");
+ * StockFileTailer tailer = new StockFileTailer("data/AUD.csv", store);
+ * tailer.poll(); // whole file
+ * StockDataSetIterator iterator = new StockDataSetIterator(store, 128, 22, 0.8, PriceCategory.BUY);
+ * tailer.register(iterator);
+ * tailer.start(5, TimeUnit.MINUTES);
+ * </pre>
+ */
+public class StockFileTailer implements Closeable {
+
+    private static final int bufferSize = 64 * 1024;
+
+    private final String filename;
+    private final StockFeatureStore store;
+    private final List<StockDataSetIterator> iterators = new CopyOnWriteArrayList<>();
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+    private final double[] features = new double[VECTOR_SIZE];
+
+    /**
+     * bytes of an incomplete last line
+     */
+    private byte[] pending = new byte[256];
+    private int pendingLength;
+
+    private long position;
+    private boolean headerSkipped;
+
+    private ScheduledExecutorService scheduler;
+
+    public StockFileTailer(String filename, StockFeatureStore store) {
+        this.filename = filename;
+        this.store = store;
+    }
+
+    public void register(StockDataSetIterator iterator) {
+        iterators.add(iterator);
+    }
+
+    /**
+     * Parse the complete lines appended since the last call
+     *
+     * @return number of new bars
+     */
+    public synchronized int poll() throws IOException {
+        int rows = 0;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() < position) {
+                throw new IOException(MessageFormat.format("{0} was truncated, {1} bytes were already read", filename, position));
+            }
+            channel.position(position);
+            buffer.clear();
+            int read;
+            while ((read = channel.read(buffer)) > 0) {
+                position += read;
+                byte[] bytes = buffer.array();
+                int lineStart = 0;
+                for (int i = 0; i < read; i++) {
+                    if (bytes[i] != '\n') continue;
+                    String line;
+                    if (pendingLength > 0) {
+                        appendPending(bytes, lineStart, i - lineStart);
+                        line = new String(pending, 0, pendingLength, StandardCharsets.UTF_8);
+                        pendingLength = 0;
+                    } else {
+                        line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                    }
+                    lineStart = i + 1;
+
+                    if (!headerSkipped) {
+                        headerSkipped = true;
+                        continue;
+                    }
+                    if (line.isBlank()) continue;
+                    long timestamp = StockCsvReader.parseLine(line, features);
+                    store.append(timestamp, features);
+                    rows++;
+                }
+                appendPending(bytes, lineStart, read - lineStart);
+                buffer.clear();
+            }
+        }
+
+        if (rows > 0) {
+            for (StockDataSetIterator iterator : iterators) {
+                iterator.appendRows();
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Poll the file periodically on a background thread
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+        if (scheduler != null) throw new IllegalStateException("Already started");
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tailer-" + store.getSymbol());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                int rows = poll();
+                if (rows > 0) {
+                    LoggingUtils.print(MessageFormat.format("{0}: {1} new rows, {2} rows in total", filename, rows, store.size()));
+                }
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }, 0, period, unit);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void appendPending(byte[] bytes, int from, int length) {
+        if (length <= 0) return;
+        if (pendingLength + length > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + length));
+        }
+        System.arraycopy(bytes, from, pending, pendingLength, length);
+        pendingLength += length;
+    }
+}
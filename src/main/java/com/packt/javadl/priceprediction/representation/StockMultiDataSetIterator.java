@@ -0,0 +1,89 @@
+package com.packt.javadl.priceprediction.representation;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.dataset.MultiDataSet;
+import org.nd4j.linalg.dataset.api.MultiDataSetPreProcessor;
+import org.nd4j.linalg.dataset.api.iterator.MultiDataSetIterator;
+import org.nd4j.linalg.indexing.NDArrayIndex;
+
+/**
+ * Mini-batches of a {@link StockDataSetIterator} with one label array per output of a multi-task network:
+ * <ul>
+ * <li>prices: the numeric features, normalized, [miniBatch, NUMERIC_FEATURES, exampleLength]</li>
+ * <li>decision: BUY, SELL, NO_DECISION one-hot, [miniBatch, 3, exampleLength]</li>
+ * <li>execute: EXECUTE, NO_EXECUTE one-hot, [miniBatch, 2, exampleLength]</li>
+ * </ul>
+ */
+@SuppressWarnings("serial")
+public class StockMultiDataSetIterator implements MultiDataSetIterator {
+
+    /**
+     * labels of every feature, split per output
+     */
+    private final StockDataSetIterator iterator;
+
+    private MultiDataSetPreProcessor preProcessor;
+
+    public StockMultiDataSetIterator(FeatureStore store, int miniBatchSize, int exampleLength, double splitRatio) {
+        this.iterator = new StockDataSetIterator(store, miniBatchSize, exampleLength, splitRatio, PriceCategory.ALL);
+    }
+
+    public StockDataSetIterator getIterator() {
+        return iterator;
+    }
+
+    @Override
+    public MultiDataSet next(int num) {
+        DataSet dataSet = iterator.next(num);
+        INDArray labels = dataSet.getLabels();
+        INDArray prices = features(labels, 0, PriceCategory.BUY.featureIndex);
+        INDArray decision = features(labels, PriceCategory.BUY.featureIndex, PriceCategory.EXECUTE.featureIndex);
+        INDArray execute = features(labels, PriceCategory.EXECUTE.featureIndex, StockDataSetIterator.VECTOR_SIZE);
+        MultiDataSet multiDataSet = new MultiDataSet(new INDArray[]{dataSet.getFeatures()}, new INDArray[]{prices, decision, execute});
+        if (preProcessor != null) preProcessor.preProcess(multiDataSet);
+        return multiDataSet;
+    }
+
+    /**
+     * @return features [from, to) of the labels
+     */
+    private static INDArray features(INDArray labels, int from, int to) {
+        return labels.get(NDArrayIndex.all(), NDArrayIndex.interval(from, to), NDArrayIndex.all()).dup('f');
+    }
+
+    @Override
+    public MultiDataSet next() {
+        return next(iterator.batch());
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public void setPreProcessor(MultiDataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public MultiDataSetPreProcessor getPreProcessor() {
+        return preProcessor;
+    }
+
+    @Override
+    public boolean resetSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean asyncSupported() {
+        return iterator.asyncSupported();
+    }
+
+    @Override
+    public void reset() {
+        iterator.reset();
+    }
+}
@@ -9,9 +9,9 @@ public class TestCase {
 
     private String currency;
     private double volume;
+    private double wap;
     private double count;
     private double minute;
-    private double wap;
     private double tesla3;
     private double tesla6;
     private double tesla9;
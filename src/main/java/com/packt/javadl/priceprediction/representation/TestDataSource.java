@@ -0,0 +1,116 @@
+package com.packt.javadl.priceprediction.representation;
+
+import com.packt.javadl.priceprediction.utils.Pair;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.nio.DoubleBuffer;
+import java.util.AbstractList;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Test windows served from the normalized series, nothing is kept between two calls of {@link #get(int)}.
+ * <p>
+ * Input is [exampleLength, VECTOR_SIZE], a bulk copy of the window rows of the series,
+ * label is not normalized => Used directly for comparison
+ */
+public class TestDataSource extends AbstractList<Pair<INDArray, INDArray>> {
+
+    private final FeatureStore store;
+    private final NormalizedSeries series;
+    private final int from;
+    private final int size;
+    private final int exampleLength;
+    private final PriceCategory category;
+
+    /**
+     * @param from first row of the first window
+     * @param size number of windows
+     */
+    TestDataSource(FeatureStore store, NormalizedSeries series, int from, int size, int exampleLength, PriceCategory category) {
+        this.store = store;
+        this.series = series;
+        this.from = from;
+        this.size = size;
+        this.exampleLength = exampleLength;
+        this.category = category;
+    }
+
+    @Override
+    public Pair<INDArray, INDArray> get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        int i = from + index;
+        // the rows of the series are the 'c' order of [c, k]
+        double[] window = new double[exampleLength * VECTOR_SIZE];
+        getWindow(index).get(window);
+        INDArray input = Nd4j.create(window, new int[]{exampleLength, VECTOR_SIZE}, 'c');
+
+        // Label features : 1 day ahead prediction
+        int labelRow = i + exampleLength;
+        INDArray label;
+        if (category == PriceCategory.ALL) {
+            double[] values = new double[VECTOR_SIZE];
+            for (int k = 0; k < VECTOR_SIZE; k++) {
+                values[k] = store.getValue(labelRow, k);
+            }
+            label = Nd4j.create(values);
+        } else {
+            label = Nd4j.create(new double[]{store.getValue(labelRow, category.featureIndex)});
+        }
+        return new Pair<>(input, label);
+    }
+
+    /**
+     * Stack the windows [fromIndex, fromIndex + count) into a [count, VECTOR_SIZE, exampleLength] tensor,
+     * the layout of the training mini-batches
+     */
+    public INDArray getInputBatch(int fromIndex, int count) {
+        if (fromIndex < 0 || count < 0 || fromIndex + count > size) {
+            throw new IndexOutOfBoundsException(fromIndex + count);
+        }
+        // consecutive windows overlap, their rows are copied once
+        double[] rows = new double[(count + exampleLength - 1) * VECTOR_SIZE];
+        if (count > 0) series.copyRows(from + fromIndex, count + exampleLength - 1, rows, 0);
+        double[] values = new double[count * VECTOR_SIZE * exampleLength];
+        for (int index = 0; index < count; index++) {
+            NormalizedSeries.putWindow(rows, index, exampleLength, index, count, values);
+        }
+        return Nd4j.create(values, new int[]{count, VECTOR_SIZE, exampleLength}, 'f');
+    }
+
+    /**
+     * @return read-only view of the normalized input rows of a window, [c, k] is at c * VECTOR_SIZE + k
+     */
+    public DoubleBuffer getWindow(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return series.window(from + index, exampleLength);
+    }
+
+    /**
+     * @return the not normalized value of a feature of the bar following the window
+     */
+    public double getActual(int index, int featureIndex) {
+        return store.getValue(from + index + exampleLength, featureIndex);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return row of the store where the first window starts
+     */
+    public int getFrom() {
+        return from;
+    }
+
+    public int getExampleLength() {
+        return exampleLength;
+    }
+
+    public PriceCategory getCategory() {
+        return category;
+    }
+}
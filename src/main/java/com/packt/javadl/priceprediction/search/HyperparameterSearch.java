@@ -0,0 +1,189 @@
+package com.packt.javadl.priceprediction.search;
+
+import com.packt.javadl.priceprediction.neuralnetwork.LstmHyperparameters;
+import com.packt.javadl.priceprediction.neuralnetwork.NetworkConfiguration;
+import com.packt.javadl.priceprediction.neuralnetwork.ParallelTrainer;
+import com.packt.javadl.priceprediction.neuralnetwork.RecurrentNets;
+import com.packt.javadl.priceprediction.representation.FeatureStore;
+import com.packt.javadl.priceprediction.representation.MultiSymbolDataSetIterator;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.representation.StockDataSetIterator;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random search over a {@link HyperparameterSpace}, candidates are trained concurrently until the wall-clock budget
+ * is spent. Every scored candidate is kept in the {@link SearchResultCache}, candidates are drawn from a seeded random
+ * so a resumed search draws the same ones and only trains those missing from the cache.
+ * <p>
+ * The selected candidate is the smallest network, by number of parameters, whose validation loss meets maxLoss.
+ * Candidates are scored on the last rows before the split, the test windows are not used to select them.
+ */
+public class HyperparameterSearch {
+
+    private final HyperparameterSpace space = new HyperparameterSpace();
+
+    private int parallelism = 2;
+    private long budgetMillis = TimeUnit.HOURS.toMillis(1);
+    private int maxCandidates = 50;
+    private int epochs = 3;
+    private int batchSize = 64;
+    private double splitRatio = 0.8;
+    private double validationRatio = 0.1;
+    private double maxLoss = 0.01;
+    private long seed = 12345;
+    private NetworkConfiguration networkConfiguration = NetworkConfiguration.defaults();
+
+    public HyperparameterSearch parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public HyperparameterSearch budget(long budget, TimeUnit unit) {
+        this.budgetMillis = unit.toMillis(budget);
+        return this;
+    }
+
+    public HyperparameterSearch maxCandidates(int maxCandidates) {
+        this.maxCandidates = maxCandidates;
+        return this;
+    }
+
+    public HyperparameterSearch epochs(int epochs) {
+        this.epochs = epochs;
+        return this;
+    }
+
+    public HyperparameterSearch batchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * accuracy bar, validation mean squared error on normalized values
+     */
+    public HyperparameterSearch maxLoss(double maxLoss) {
+        this.maxLoss = maxLoss;
+        return this;
+    }
+
+    public HyperparameterSearch seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * workspace modes of the candidate networks, ND4J must already use its precision
+     */
+    public HyperparameterSearch networkConfiguration(NetworkConfiguration networkConfiguration) {
+        this.networkConfiguration = networkConfiguration;
+        return this;
+    }
+
+    /**
+     * @return smallest network meeting maxLoss, the lowest loss when none does, null when nothing was scored
+     */
+    public SearchResult search(Map<String, FeatureStore> stores, PriceCategory category, SearchResultCache cache) throws IOException {
+        long deadline = System.currentTimeMillis() + budgetMillis;
+
+        Random random = new Random(seed);
+        Map<String, LstmHyperparameters> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < maxCandidates; i++) {
+            LstmHyperparameters candidate = space.sample(random);
+            if (cache.get(candidate) == null) candidates.put(candidate.key(), candidate);
+        }
+        LoggingUtils.print(MessageFormat.format("Searching {0} candidates ({1} already scored) with {2} workers, budget {3} s",
+                candidates.size(), maxCandidates - candidates.size(), parallelism, budgetMillis / 1000));
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<SearchResult>> futures = new ArrayList<>();
+            for (LstmHyperparameters candidate : candidates.values()) {
+                futures.add(executor.submit(() -> evaluate(candidate, stores, category, deadline, cache)));
+            }
+            int abandoned = 0;
+            for (Future<SearchResult> future : futures) {
+                if (future.get() == null) abandoned++;
+            }
+            if (abandoned > 0) {
+                LoggingUtils.print(MessageFormat.format("Budget spent, {0} candidates left for the next run", abandoned));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Search interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(MessageFormat.format("Candidate failed: {0}", e.getCause().getMessage()), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return select(cache.getResults());
+    }
+
+    /**
+     * Train and score one candidate
+     *
+     * @return null when the budget is spent before the end of the training
+     */
+    private SearchResult evaluate(LstmHyperparameters candidate, Map<String, FeatureStore> stores, PriceCategory category,
+                                  long deadline, SearchResultCache cache) {
+        if (System.currentTimeMillis() >= deadline) return null;
+
+        long start = System.nanoTime();
+        MultiSymbolDataSetIterator iterator = new MultiSymbolDataSetIterator(stores, batchSize, candidate.getExampleLength(), splitRatio, category);
+        for (StockDataSetIterator symbolIterator : iterator.getIterators().values()) {
+            symbolIterator.setValidationRatio(validationRatio);
+        }
+        MultiLayerNetwork net = RecurrentNets.lstmNetwork(iterator.inputColumns(), iterator.totalOutcomes(), candidate, networkConfiguration);
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            iterator.reset();
+            while (iterator.hasNext()) {
+                if (System.currentTimeMillis() >= deadline) return null;
+                net.fit(iterator.next());
+            }
+        }
+        double loss = new ParallelTrainer().validationLoss(net, iterator);
+        SearchResult result = new SearchResult(candidate, net.numParams(), loss, (System.nanoTime() - start) / 1_000_000);
+        LoggingUtils.print(MessageFormat.format("{0}: {1} parameters, validation loss {2} in {3} ms",
+                candidate.key(), result.getNumParams(), loss, result.getTrainingMillis()));
+        try {
+            cache.put(result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result;
+    }
+
+    private SearchResult select(List<SearchResult> results) {
+        results.removeIf(result -> Double.isNaN(result.getValidationLoss()));
+        if (results.isEmpty()) return null;
+
+        results.sort(Comparator.comparingLong(SearchResult::getNumParams).thenComparingDouble(SearchResult::getValidationLoss));
+        for (SearchResult result : results) {
+            if (result.getValidationLoss() <= maxLoss) {
+                LoggingUtils.print(MessageFormat.format("Smallest network meeting loss {0}: {1}, {2} parameters, loss {3}",
+                        maxLoss, result.getHyperparameters().key(), result.getNumParams(), result.getValidationLoss()));
+                return result;
+            }
+        }
+        SearchResult best = results.stream().min(Comparator.comparingDouble(SearchResult::getValidationLoss)).get();
+        LoggingUtils.print(MessageFormat.format("No network meets loss {0}, lowest loss: {1}, {2} parameters, loss {3}",
+                maxLoss, best.getHyperparameters().key(), best.getNumParams(), best.getValidationLoss()));
+        return best;
+    }
+}
@@ -0,0 +1,57 @@
+package com.packt.javadl.priceprediction.search;
+
+import com.packt.javadl.priceprediction.neuralnetwork.LstmHyperparameters;
+import org.deeplearning4j.arbiter.optimize.api.ParameterSpace;
+import org.deeplearning4j.arbiter.optimize.distribution.LogUniformDistribution;
+import org.deeplearning4j.arbiter.optimize.parameter.continuous.ContinuousParameterSpace;
+import org.deeplearning4j.arbiter.optimize.parameter.discrete.DiscreteParameterSpace;
+import org.deeplearning4j.arbiter.optimize.parameter.integer.IntegerParameterSpace;
+
+import java.util.Random;
+
+/**
+ * Arbiter parameter spaces of the LSTM networks, from the lightLstmNetwork shape (2 x 32 LSTM) to the
+ * fullLstmNetwork one (3 x 256 LSTM, 3 x 128 dense), and of the window length.
+ * Every leaf owns one index of the [0, 1] candidate vector.
+ */
+public class HyperparameterSpace {
+
+    private final ParameterSpace<Integer> lstmLayers = new IntegerParameterSpace(1, 3);
+    private final ParameterSpace<Integer> lstmLayerSize = new DiscreteParameterSpace<>(16, 32, 64, 128, 256);
+    private final ParameterSpace<Integer> denseLayers = new IntegerParameterSpace(1, 3);
+    private final ParameterSpace<Integer> denseLayerSize = new DiscreteParameterSpace<>(16, 32, 64, 128);
+    private final ParameterSpace<Double> dropoutRatio = new ContinuousParameterSpace(0, 0.1);
+    private final ParameterSpace<Double> learningRate = new ContinuousParameterSpace(new LogUniformDistribution(1e-4, 1e-1));
+    private final ParameterSpace<Integer> exampleLength = new DiscreteParameterSpace<>(11, 22, 44);
+
+    private final ParameterSpace<?>[] leaves = {
+            lstmLayers, lstmLayerSize, denseLayers, denseLayerSize, dropoutRatio, learningRate, exampleLength
+    };
+
+    public HyperparameterSpace() {
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i].setIndices(i);
+        }
+    }
+
+    public int numParameters() {
+        return leaves.length;
+    }
+
+    public LstmHyperparameters getValue(double[] values) {
+        return new LstmHyperparameters(lstmLayers.getValue(values), lstmLayerSize.getValue(values),
+                denseLayers.getValue(values), denseLayerSize.getValue(values),
+                dropoutRatio.getValue(values), learningRate.getValue(values), exampleLength.getValue(values));
+    }
+
+    /**
+     * Uniform random candidate, the same random gives the same candidates so that a search can be resumed
+     */
+    public LstmHyperparameters sample(Random random) {
+        double[] values = new double[numParameters()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble();
+        }
+        return getValue(values);
+    }
+}
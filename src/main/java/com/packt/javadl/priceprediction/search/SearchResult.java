@@ -0,0 +1,21 @@
+package com.packt.javadl.priceprediction.search;
+
+import com.packt.javadl.priceprediction.neuralnetwork.LstmHyperparameters;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class SearchResult {
+
+    private LstmHyperparameters hyperparameters;
+
+    /**
+     * number of parameters of the network, inference latency grows with it
+     */
+    private long numParams;
+
+    private double validationLoss;
+
+    private long trainingMillis;
+}
@@ -0,0 +1,68 @@
+package com.packt.javadl.priceprediction.search;
+
+import com.packt.javadl.priceprediction.neuralnetwork.LstmHyperparameters;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scored candidates of a search, one tab separated line per candidate appended as soon as it is scored,
+ * so an interrupted search resumes where it stopped.
+ * <p>
+ * File Content:
+ * lstm=2x64,dense=2x32,dropout=0.05012345678901234,lr=0.0012345678901234567,window=22	61473	0.0123	84211
+ * <p>
+ * Lines written with rounded ratios are kept for the selection, but are keyed again from their parsed values,
+ * so they no longer match a drawn candidate and that candidate is trained again.
+ */
+public class SearchResultCache {
+
+    private final Path file;
+    private final Map<String, SearchResult> results = new LinkedHashMap<>();
+
+    public SearchResultCache(Path file) throws IOException {
+        this.file = file;
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) continue;
+                String[] columns = line.split("\t");
+                if (columns.length != 4) {
+                    throw new RuntimeException(MessageFormat.format("Line {0} of {1} is not parsed Correctly", line, file));
+                }
+                SearchResult result = new SearchResult(LstmHyperparameters.fromKey(columns[0]),
+                        Long.parseLong(columns[1]), Double.parseDouble(columns[2]), Long.parseLong(columns[3]));
+                results.put(result.getHyperparameters().key(), result);
+            }
+            LoggingUtils.print(MessageFormat.format("{0} scored candidates read from {1}", results.size(), file));
+        }
+    }
+
+    public synchronized SearchResult get(LstmHyperparameters hyperparameters) {
+        return results.get(hyperparameters.key());
+    }
+
+    public synchronized List<SearchResult> getResults() {
+        return new ArrayList<>(results.values());
+    }
+
+    public synchronized void put(SearchResult result) throws IOException {
+        String key = result.getHyperparameters().key();
+        results.put(key, result);
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(key + "\t" + result.getNumParams() + "\t" + result.getValidationLoss() + "\t" + result.getTrainingMillis());
+            writer.newLine();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.packt.javadl.priceprediction.server;
+
+import com.packt.javadl.priceprediction.inference.MicroBatcher;
+import com.packt.javadl.priceprediction.inference.ModelKey;
+import com.packt.javadl.priceprediction.inference.ModelRegistry;
+import com.packt.javadl.priceprediction.inference.PredictionCache;
+import com.packt.javadl.priceprediction.neuralnetwork.ModelMetadata;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.representation.StockCsvReader;
+import com.packt.javadl.priceprediction.utils.LatencyStats;
+import com.packt.javadl.priceprediction.utils.LoggingUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Embedded HTTP prediction service, JDK HttpServer only.
+ * <p>
+ * POST /predict?symbol=AUD&amp;category=BUY[&amp;version=2] with the most recent bars in the CSV file format as body
+ * (header optional, at least the model window length of bars, oldest first) returns the prediction of the next bar:
+ * {"symbol":"AUD","category":"BUY","version":2,"predictions":{"BUY":0.8123}}
+ * <p>
+ * GET /metrics returns the latency percentiles, throughput, batching, prediction cache and model registry figures.
+ * <p>
+ * Windows already scored by the same model version are answered from the prediction cache, without forward pass.
+ */
+public class PredictionServer implements AutoCloseable {
+
+    private static final long requestTimeoutMillis = 10_000;
+
+    private final ModelRegistry registry;
+    private final MicroBatcher batcher;
+    private final PredictionCache cache;
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final LatencyStats requestLatencies = new LatencyStats(10_000);
+
+    /**
+     * @param cache null to score every request
+     */
+    public PredictionServer(int port, int handlerThreads, ModelRegistry registry, MicroBatcher batcher, PredictionCache cache) throws IOException {
+        this.registry = registry;
+        this.batcher = batcher;
+        this.cache = cache;
+        if (cache != null) registry.addRemovalListener(cache);
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        handlers = Executors.newFixedThreadPool(handlerThreads);
+        server.setExecutor(handlers);
+        server.createContext("/predict", this::predict);
+        server.createContext("/metrics", this::metrics);
+    }
+
+    public void start() {
+        server.start();
+        LoggingUtils.print(MessageFormat.format("Prediction server listening on port {0}", server.getAddress().getPort()));
+    }
+
+    private void predict(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "Use POST");
+                return;
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String symbol = query.get("symbol");
+            if (symbol == null) {
+                respond(exchange, 400, "Missing symbol parameter");
+                return;
+            }
+            ModelKey key = new ModelKey(symbol, PriceCategory.valueOf(query.getOrDefault("category", "BUY")),
+                    Integer.parseInt(query.getOrDefault("version", String.valueOf(ModelKey.LATEST))));
+
+            ModelMetadata metadata;
+            try {
+                metadata = registry.getMetadata(key);
+            } catch (IOException e) {
+                respond(exchange, 404, e.getMessage());
+                return;
+            }
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            double[][] window = lastBars(body, metadata.getExampleLength());
+
+            PredictionCache.WindowKey cacheKey = cache == null ? null : PredictionCache.key(key, metadata, window);
+            double[] prediction = cacheKey == null ? null : cache.get(cacheKey);
+            if (prediction == null) {
+                prediction = batcher.submit(key, window).get(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+                if (cacheKey != null) cache.put(cacheKey, prediction);
+            }
+            respond(exchange, 200, toJson(key, metadata, prediction));
+            requestLatencies.record(System.nanoTime() - start);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, e.getMessage());
+        } catch (TimeoutException e) {
+            respond(exchange, 503, "Prediction timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "Interrupted");
+        } catch (ExecutionException e) {
+            respond(exchange, 500, String.valueOf(e.getCause().getMessage()));
+        } catch (RuntimeException e) {
+            respond(exchange, 500, String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return the last exampleLength bars of the CSV body, oldest first
+     */
+    private static double[][] lastBars(String body, int exampleLength) {
+        List<double[]> bars = new ArrayList<>();
+        for (String line : body.split("\r?\n")) {
+            if (line.isBlank() || line.startsWith("Currency")) continue;
+            double[] features = new double[VECTOR_SIZE];
+            try {
+                StockCsvReader.parseLine(line, features);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException(MessageFormat.format("Bar {0} is not parsed Correctly: {1}", line, e.getMessage()), e);
+            }
+            bars.add(features);
+        }
+        if (bars.size() < exampleLength) {
+            throw new IllegalArgumentException(MessageFormat.format("{0} bars sent, {1} are needed", bars.size(), exampleLength));
+        }
+        return bars.subList(bars.size() - exampleLength, bars.size()).toArray(new double[0][]);
+    }
+
+    private static String toJson(ModelKey key, ModelMetadata metadata, double[] prediction) {
+        StringBuilder json = new StringBuilder()
+                .append("{\"symbol\":\"").append(metadata.getSymbol())
+                .append("\",\"category\":\"").append(key.getCategory())
+                .append("\",\"version\":").append(metadata.getVersion())
+                .append(",\"predictions\":{");
+        for (int n = 0; n < prediction.length; n++) {
+            if (n > 0) json.append(',');
+            json.append('"').append(PriceCategory.fromFeatureIndex(metadata.outputFeatureIndex(n))).append("\":")
+                    .append(String.format(Locale.ROOT, "%.6g", prediction[n]));
+        }
+        return json.append("}}").toString();
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        try {
+            ModelRegistry.Stats stats = registry.getStats();
+            String text = String.format(Locale.ROOT,
+                    "requests %d%nrequests_per_second %.1f%nlatency_p50_ms %.3f%nlatency_p99_ms %.3f%n"
+                            + "windows_per_forward_pass %.2f%nprediction_failures %d%n"
+                            + "models %d%nmodel_bytes %d%nmodel_hit_rate %.3f%nmodel_evictions %d%nmodel_load_avg_ms %.1f%n"
+                            + "prediction_cache_entries %d%nprediction_cache_hit_rate %.3f%n",
+                    requestLatencies.getCount(), requestLatencies.throughput(),
+                    requestLatencies.percentileMillis(50), requestLatencies.percentileMillis(99),
+                    batcher.averageBatchSize(), batcher.getFailures(),
+                    stats.getModels(), stats.getBytes(), stats.hitRate(), stats.getEvictions(), stats.getAverageLoadMillis(),
+                    cache == null ? 0 : cache.size(), cache == null ? 0 : cache.hitRate());
+            respond(exchange, 200, text);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", body.startsWith("{") ? "application/json" : "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) return query;
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals < 0) continue;
+            query.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                    URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    public void printStats() {
+        LoggingUtils.print(MessageFormat.format("HTTP: {0}", requestLatencies));
+        batcher.printStats();
+        registry.printStats();
+        if (cache != null) cache.printStats();
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        handlers.shutdown();
+        batcher.close();
+    }
+}
@@ -0,0 +1,58 @@
+package com.packt.javadl.priceprediction.utils;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+/**
+ * Latency percentiles over the last samples and throughput since creation, thread safe
+ */
+public class LatencyStats {
+
+    private final long[] samples;
+    private final long startNanos = System.nanoTime();
+    private long count;
+
+    /**
+     * @param window number of most recent samples the percentiles are computed on
+     */
+    public LatencyStats(int window) {
+        samples = new long[window];
+    }
+
+    public synchronized void record(long nanos) {
+        samples[(int) (count % samples.length)] = nanos;
+        count++;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @param percentile in [0, 100]
+     * @return latency in milliseconds, 0 without samples
+     */
+    public double percentileMillis(double percentile) {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+        }
+        if (sorted.length == 0) return 0;
+        Arrays.sort(sorted);
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * @return samples per second since creation
+     */
+    public double throughput() {
+        return getCount() / ((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    @Override
+    public String toString() {
+        return MessageFormat.format("{0} requests, {1,number,#.#}/sec, p50 {2,number,#.###} ms, p99 {3,number,#.###} ms",
+                getCount(), throughput(), percentileMillis(50), percentileMillis(99));
+    }
+}
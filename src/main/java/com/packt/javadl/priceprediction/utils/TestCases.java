@@ -6,6 +6,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class TestCases {
 
@@ -15,6 +17,10 @@ public class TestCases {
         return testCasesPerCurrency.getOrDefault(currency, new ArrayList<>());
     }
 
+    public static Set<String> getCurrencies() {
+        return new TreeSet<>(testCasesPerCurrency.keySet());
+    }
+
     static {
         /*
          * Initialize Test Data for each Currency
@@ -0,0 +1,78 @@
+package com.packt.javadl.priceprediction.backtest;
+
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class BacktesterTest {
+
+    @Test
+    public void longPositionCompoundsCloseToCloseMoves() {
+        Backtester.Account account = new Backtester.Account(0);
+        account.mark(100);
+        account.trade(1);
+        account.mark(110);
+        account.mark(99);
+        account.trade(DecisionRule.FLAT);
+
+        assertEquals(0.99, account.equity, 1e-12);
+        assertEquals(0.1, account.maxDrawdown, 1e-12);
+        assertEquals(2, account.barsInPosition);
+        assertEquals(1, account.winningBars);
+        assertEquals(1, account.trades);
+        assertEquals(0, account.winningTrades);
+    }
+
+    @Test
+    public void costIsPaidOnEveryUnitOfPositionChange() {
+        Backtester.Account account = new Backtester.Account(10);
+        account.mark(100);
+        account.trade(-1);
+        assertEquals(0.999, account.equity, 1e-12);
+
+        account.mark(90);
+        double beforeFlip = 0.999 * 1.1;
+        assertEquals(beforeFlip, account.equity, 1e-12);
+
+        // short to long is two units of position change, the short trade won net of its exit cost
+        account.trade(1);
+        assertEquals(beforeFlip * 0.998, account.equity, 1e-12);
+        assertEquals(1, account.trades);
+        assertEquals(1, account.winningTrades);
+
+        // the long trade loses its exit cost on an unchanged close
+        account.mark(90);
+        account.trade(DecisionRule.FLAT);
+        assertEquals(beforeFlip * 0.998 * 0.999, account.equity, 1e-12);
+        assertEquals(2, account.trades);
+        assertEquals(1, account.winningTrades);
+        // the flip cost is marked as a drawdown from the peak of the short trade
+        assertEquals(0.002, account.maxDrawdown, 1e-12);
+    }
+
+    @Test
+    public void flatAccountIgnoresThePriceMoves() {
+        Backtester.Account account = new Backtester.Account(10);
+        account.mark(100);
+        account.mark(50);
+        account.trade(DecisionRule.FLAT);
+
+        assertEquals(1, account.equity, 0);
+        assertEquals(0, account.maxDrawdown, 0);
+        assertEquals(0, account.barsInPosition);
+        assertEquals(0, account.trades);
+    }
+
+    @Test
+    public void multiOutputModelsAreRejected() {
+        try {
+            new Backtester().category(PriceCategory.MULTI);
+            fail("MULTI models can not be backtested");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        new Backtester().category(PriceCategory.BUY);
+    }
+}
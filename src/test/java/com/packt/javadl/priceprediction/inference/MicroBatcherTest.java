@@ -0,0 +1,99 @@
+package com.packt.javadl.priceprediction.inference;
+
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MicroBatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ModelKey key = new ModelKey("AUD", PriceCategory.CLOSE, 1);
+    private ModelRegistry registry;
+
+    @Before
+    public void saveModel() throws IOException {
+        File file = TestModels.save(folder.getRoot(), "AUD", PriceCategory.CLOSE, 1);
+        registry = new ModelRegistry(2, Long.MAX_VALUE, key -> file);
+    }
+
+    private double[] predictAlone(double[][] window) throws IOException {
+        return registry.use(key, model -> WindowEncoder.decodeLastStep(
+                model.output(WindowEncoder.encode(List.of(window), model.getMetadata())), model.getMetadata())[0]);
+    }
+
+    private static Throwable failureOf(CompletableFuture<double[]> future) throws InterruptedException, TimeoutException {
+        try {
+            future.get(30, TimeUnit.SECONDS);
+            fail("The request must fail");
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    @Test
+    public void concurrentRequestsShareOneForwardPass() throws Exception {
+        // the batch is closed by its size long before the delay
+        try (MicroBatcher batcher = new MicroBatcher(registry, 4, 10, TimeUnit.SECONDS, 2)) {
+            List<double[][]> windows = new ArrayList<>();
+            List<CompletableFuture<double[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                windows.add(TestModels.window(0.2 * i));
+                futures.add(batcher.submit(key, windows.get(i)));
+            }
+            for (int i = 0; i < 4; i++) {
+                assertArrayEquals(predictAlone(windows.get(i)), futures.get(i).get(30, TimeUnit.SECONDS), 1e-5);
+            }
+            assertEquals(4, batcher.averageBatchSize(), 0);
+            assertEquals(0, batcher.getFailures());
+        }
+    }
+
+    @Test
+    public void malformedWindowOnlyFailsItsRequest() throws Exception {
+        try (MicroBatcher batcher = new MicroBatcher(registry, 3, 10, TimeUnit.SECONDS, 2)) {
+            double[][] shortWindow = new double[TestModels.exampleLength - 1][];
+            System.arraycopy(TestModels.window(0.5), 0, shortWindow, 0, shortWindow.length);
+
+            CompletableFuture<double[]> first = batcher.submit(key, TestModels.window(0.1));
+            CompletableFuture<double[]> malformed = batcher.submit(key, shortWindow);
+            CompletableFuture<double[]> last = batcher.submit(key, TestModels.window(0.9));
+
+            assertTrue(failureOf(malformed) instanceof IllegalArgumentException);
+            assertArrayEquals(predictAlone(TestModels.window(0.1)), first.get(30, TimeUnit.SECONDS), 1e-5);
+            assertArrayEquals(predictAlone(TestModels.window(0.9)), last.get(30, TimeUnit.SECONDS), 1e-5);
+            assertEquals(1, batcher.getFailures());
+            assertEquals(2, batcher.averageBatchSize(), 0);
+        }
+    }
+
+    @Test
+    public void closeFailsTheWaitingRequests() throws Exception {
+        MicroBatcher batcher = new MicroBatcher(registry, 100, 10, TimeUnit.SECONDS, 1);
+        // held by the dispatcher until the batch is full or the delay is over
+        CompletableFuture<double[]> waiting = batcher.submit(key, TestModels.window(0.5));
+        batcher.close();
+
+        assertTrue(waiting.isDone());
+        assertTrue(failureOf(waiting) instanceof IllegalStateException);
+        assertTrue(failureOf(batcher.submit(key, TestModels.window(0.5))) instanceof IllegalStateException);
+    }
+}
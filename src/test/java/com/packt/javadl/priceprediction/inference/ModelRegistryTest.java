@@ -0,0 +1,127 @@
+package com.packt.javadl.priceprediction.inference;
+
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ModelRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File fileOf(ModelKey key) {
+        return new File(folder.getRoot(), key.getSymbol() + "_" + key.getCategory() + "_v1.zip");
+    }
+
+    private static String symbolOf(ModelRegistry registry, ModelKey key) throws IOException {
+        return registry.use(key, model -> model.getMetadata().getSymbol());
+    }
+
+    @Test
+    public void leastRecentlyUsedModelIsEvicted() throws IOException {
+        for (String symbol : new String[]{"AUD", "CHF", "EUR"}) {
+            TestModels.save(folder.getRoot(), symbol, PriceCategory.CLOSE, 1);
+        }
+        ModelKey aud = new ModelKey("AUD", PriceCategory.CLOSE, 1);
+        ModelKey chf = new ModelKey("CHF", PriceCategory.CLOSE, 1);
+        ModelKey eur = new ModelKey("EUR", PriceCategory.CLOSE, 1);
+
+        ModelRegistry registry = new ModelRegistry(2, Long.MAX_VALUE, this::fileOf);
+        List<String> removed = new ArrayList<>();
+        registry.addRemovalListener((key, replaced) -> removed.add(key + (replaced ? " replaced" : " evicted")));
+
+        assertEquals("AUD", symbolOf(registry, aud));
+        assertEquals("CHF", symbolOf(registry, chf));
+        // AUD becomes the most recently used, CHF is the next one out
+        assertEquals("AUD", symbolOf(registry, aud));
+        assertEquals("EUR", symbolOf(registry, eur));
+
+        assertEquals(List.of("CHF/CLOSE/v1 evicted"), removed);
+        ModelRegistry.Stats stats = registry.getStats();
+        assertEquals(2, stats.getModels());
+        assertEquals(1, stats.getEvictions());
+        assertEquals(1, stats.getHits());
+        assertEquals(3, stats.getMisses());
+
+        // the evicted model is loaded again, AUD is now the least recently used
+        assertEquals("CHF", symbolOf(registry, chf));
+        assertEquals(List.of("CHF/CLOSE/v1 evicted", "AUD/CLOSE/v1 evicted"), removed);
+        assertEquals(4, registry.getStats().getMisses());
+    }
+
+    @Test
+    public void modelsAboveMaxBytesAreEvicted() throws IOException {
+        TestModels.save(folder.getRoot(), "AUD", PriceCategory.CLOSE, 1);
+        TestModels.save(folder.getRoot(), "CHF", PriceCategory.CLOSE, 1);
+        ModelKey aud = new ModelKey("AUD", PriceCategory.CLOSE, 1);
+        ModelKey chf = new ModelKey("CHF", PriceCategory.CLOSE, 1);
+
+        // room for a single model
+        ModelRegistry registry = new ModelRegistry(10, 1, this::fileOf);
+        symbolOf(registry, aud);
+        symbolOf(registry, chf);
+
+        ModelRegistry.Stats stats = registry.getStats();
+        assertEquals(1, stats.getModels());
+        assertEquals(1, stats.getEvictions());
+        assertTrue(stats.getBytes() > 0);
+    }
+
+    @Test
+    public void failedLoadIsRetriedOnTheNextUse() throws IOException {
+        ModelKey aud = new ModelKey("AUD", PriceCategory.CLOSE, 1);
+        AtomicBoolean broken = new AtomicBoolean(true);
+        ModelRegistry registry = new ModelRegistry(2, Long.MAX_VALUE, key -> {
+            if (broken.get()) throw new NoClassDefFoundError("org/nd4j/linalg/cpu/nativecpu/CpuBackend");
+            return fileOf(key);
+        });
+
+        try {
+            symbolOf(registry, aud);
+            fail("The loader error must fail the use");
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof NoClassDefFoundError);
+        }
+        assertEquals(1, registry.getStats().getLoadFailures());
+        assertEquals(0, registry.getStats().getModels());
+
+        // the failed entry was removed, the missing file is now reported by the next load
+        broken.set(false);
+        try {
+            symbolOf(registry, aud);
+            fail("A missing model file must fail the use");
+        } catch (IOException e) {
+            assertEquals(2, registry.getStats().getLoadFailures());
+        }
+
+        TestModels.save(folder.getRoot(), "AUD", PriceCategory.CLOSE, 1);
+        assertEquals("AUD", symbolOf(registry, aud));
+        assertEquals(1, registry.getStats().getModels());
+    }
+
+    @Test
+    public void fileOfAnotherVersionIsRejected() throws IOException {
+        TestModels.save(folder.getRoot(), "AUD", PriceCategory.CLOSE, 1);
+        ModelRegistry registry = new ModelRegistry(2, Long.MAX_VALUE, key -> fileOf(new ModelKey(key.getSymbol(), key.getCategory(), 1)));
+
+        try {
+            symbolOf(registry, new ModelKey("AUD", PriceCategory.CLOSE, 2));
+            fail("A model of another version must not be served");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("AUD/CLOSE/v2"));
+        }
+        assertEquals(0, registry.getStats().getModels());
+        assertEquals("AUD", symbolOf(registry, ModelKey.latest("AUD", PriceCategory.CLOSE)));
+    }
+}
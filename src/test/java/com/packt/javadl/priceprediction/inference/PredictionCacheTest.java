@@ -0,0 +1,105 @@
+package com.packt.javadl.priceprediction.inference;
+
+import com.packt.javadl.priceprediction.neuralnetwork.ModelMetadata;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class PredictionCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final ModelKey aud = ModelKey.latest("AUD", PriceCategory.CLOSE);
+    private static final ModelKey chf = ModelKey.latest("CHF", PriceCategory.CLOSE);
+
+    private static ModelMetadata metadata(String symbol, int version) {
+        double[] minArray = new double[VECTOR_SIZE];
+        double[] maxArray = new double[VECTOR_SIZE];
+        Arrays.fill(maxArray, 1);
+        return new ModelMetadata(symbol, PriceCategory.CLOSE, TestModels.exampleLength, minArray, maxArray,
+                ModelMetadata.currentFeatures(), 0, version);
+    }
+
+    @Test
+    public void identicalWindowIsServedFromTheCache() {
+        PredictionCache cache = new PredictionCache(10, 1, TimeUnit.HOURS);
+        cache.put(PredictionCache.key(aud, metadata("AUD", 1), TestModels.window(0.5)), new double[]{0.7});
+
+        double[] prediction = cache.get(PredictionCache.key(aud, metadata("AUD", 1), TestModels.window(0.5)));
+        assertArrayEquals(new double[]{0.7}, prediction, 0);
+        // a copy is returned, the cached prediction can not be changed by the caller
+        prediction[0] = 0;
+        assertArrayEquals(new double[]{0.7}, cache.get(PredictionCache.key(aud, metadata("AUD", 1), TestModels.window(0.5))), 0);
+
+        assertNull(cache.get(PredictionCache.key(aud, metadata("AUD", 1), TestModels.window(0.6))));
+        assertNull(cache.get(PredictionCache.key(aud, metadata("AUD", 2), TestModels.window(0.5))));
+        assertNull(cache.get(PredictionCache.key(chf, metadata("CHF", 1), TestModels.window(0.5))));
+        assertEquals(0.4, cache.hitRate(), 1e-9);
+    }
+
+    @Test
+    public void replacedModelDropsEveryVersionOfItsPredictions() {
+        PredictionCache cache = new PredictionCache(10, 1, TimeUnit.HOURS);
+        cache.put(PredictionCache.key(aud, metadata("AUD", 1), TestModels.window(0.5)), new double[]{0.7});
+        cache.put(PredictionCache.key(aud, metadata("AUD", 2), TestModels.window(0.5)), new double[]{0.8});
+        cache.put(PredictionCache.key(chf, metadata("CHF", 1), TestModels.window(0.5)), new double[]{0.9});
+
+        // an evicted model comes back with the same version, its predictions are still valid
+        cache.onModelRemoved(aud, false);
+        assertEquals(3, cache.size());
+
+        cache.onModelRemoved(aud, true);
+        assertEquals(1, cache.size());
+        assertNull(cache.get(PredictionCache.key(aud, metadata("AUD", 2), TestModels.window(0.5))));
+        assertNotNull(cache.get(PredictionCache.key(chf, metadata("CHF", 1), TestModels.window(0.5))));
+    }
+
+    @Test
+    public void leastRecentlyUsedAndExpiredEntriesAreDropped() throws InterruptedException {
+        PredictionCache cache = new PredictionCache(2, 1, TimeUnit.HOURS);
+        PredictionCache.WindowKey first = PredictionCache.key(aud, metadata("AUD", 1), TestModels.window(0.1));
+        PredictionCache.WindowKey second = PredictionCache.key(aud, metadata("AUD", 1), TestModels.window(0.2));
+        PredictionCache.WindowKey third = PredictionCache.key(aud, metadata("AUD", 1), TestModels.window(0.3));
+        cache.put(first, new double[]{1});
+        cache.put(second, new double[]{2});
+        cache.get(first);
+        cache.put(third, new double[]{3});
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+
+        PredictionCache expiring = new PredictionCache(2, 1, TimeUnit.MILLISECONDS);
+        expiring.put(first, new double[]{1});
+        Thread.sleep(20);
+        assertNull(expiring.get(first));
+        assertEquals(0, expiring.size());
+    }
+
+    @Test
+    public void invalidatedModelOfTheRegistryDropsItsPredictions() throws IOException {
+        File file = TestModels.save(folder.getRoot(), "AUD", PriceCategory.CLOSE, 1);
+        ModelRegistry registry = new ModelRegistry(2, Long.MAX_VALUE, key -> file);
+        PredictionCache cache = new PredictionCache(10, 1, TimeUnit.HOURS);
+        registry.addRemovalListener(cache);
+
+        ModelMetadata metadata = registry.getMetadata(aud);
+        cache.put(PredictionCache.key(aud, metadata, TestModels.window(0.5)), new double[]{0.7});
+        registry.invalidate(aud);
+
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,45 @@
+package com.packt.javadl.priceprediction.inference;
+
+import com.packt.javadl.priceprediction.neuralnetwork.LstmHyperparameters;
+import com.packt.javadl.priceprediction.neuralnetwork.ModelArtifact;
+import com.packt.javadl.priceprediction.neuralnetwork.ModelMetadata;
+import com.packt.javadl.priceprediction.neuralnetwork.RecurrentNets;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+
+/**
+ * Tiny saved models for the inference tests, the features are normalized on [0, 1]
+ */
+class TestModels {
+
+    static final int exampleLength = 5;
+
+    private static final LstmHyperparameters tiny = new LstmHyperparameters(1, 4, 1, 4, 0, 1e-3, exampleLength);
+
+    static File save(File directory, String symbol, PriceCategory category, int version) throws IOException {
+        MultiLayerNetwork net = RecurrentNets.lstmNetwork(VECTOR_SIZE, 1, tiny);
+        double[] minArray = new double[VECTOR_SIZE];
+        double[] maxArray = new double[VECTOR_SIZE];
+        Arrays.fill(maxArray, 1);
+        ModelMetadata metadata = new ModelMetadata(symbol, category, exampleLength, minArray, maxArray,
+                ModelMetadata.currentFeatures(), 0, version);
+        File file = new File(directory, symbol + "_" + category + "_v" + version + ".zip");
+        ModelArtifact.save(net, metadata, file);
+        return file;
+    }
+
+    /**
+     * exampleLength bars whose features all hold value
+     */
+    static double[][] window(double value) {
+        double[][] window = new double[exampleLength][VECTOR_SIZE];
+        for (double[] bar : window) Arrays.fill(bar, value);
+        return window;
+    }
+}
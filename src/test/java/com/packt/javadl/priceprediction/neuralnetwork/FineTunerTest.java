@@ -0,0 +1,114 @@
+package com.packt.javadl.priceprediction.neuralnetwork;
+
+import com.packt.javadl.priceprediction.representation.FeatureStore;
+import com.packt.javadl.priceprediction.representation.PriceCategory;
+import com.packt.javadl.priceprediction.representation.StockCsvReader;
+import com.packt.javadl.priceprediction.representation.StockFeatureStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FineTunerTest {
+
+    private static final int rows = 200;
+    private static final int exampleLength = 5;
+    private static final long firstTimestamp = 20200616093000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static FeatureStore store() {
+        StockFeatureStore store = new StockFeatureStore("AUD");
+        double[] features = new double[VECTOR_SIZE];
+        for (int row = 0; row < rows; row++) {
+            for (int k = 0; k < VECTOR_SIZE; k++) {
+                features[k] = k < StockCsvReader.NUMERIC_FEATURES ? row + k : (row + k) % 2;
+            }
+            store.append(firstTimestamp + row, features);
+        }
+        return store;
+    }
+
+    private File checkpoint(FeatureStore store, long lastTimestamp) throws IOException {
+        LstmHyperparameters tiny = new LstmHyperparameters(1, 4, 1, 4, 0, 1e-3, exampleLength);
+        ModelMetadata metadata = new ModelMetadata("AUD", PriceCategory.CLOSE, exampleLength,
+                store.getMinArray().clone(), store.getMaxArray().clone(), ModelMetadata.currentFeatures(), lastTimestamp, 1);
+        File file = new File(folder.getRoot(), "StockPriceLSTM_CLOSE_v1.zip");
+        ModelArtifact.save(RecurrentNets.lstmNetwork(VECTOR_SIZE, 1, tiny), metadata, file);
+        return file;
+    }
+
+    @Test
+    public void firstRowAfterSkipsTheCheckpointBars() {
+        FeatureStore store = store();
+        assertEquals(0, FineTuner.firstRowAfter(store, 0));
+        assertEquals(50, FineTuner.firstRowAfter(store, firstTimestamp + 49));
+        assertEquals(rows, FineTuner.firstRowAfter(store, firstTimestamp + rows - 1));
+    }
+
+    @Test
+    public void newWindowsComeFirstThenDistinctOlderOnes() {
+        int[] offsets = new FineTuner().replayRatio(0.5).trainingOffsets(80, 100);
+
+        assertEquals(30, offsets.length);
+        for (int i = 0; i < 20; i++) {
+            assertEquals(80 + i, offsets[i]);
+        }
+        Set<Integer> replayed = new HashSet<>();
+        for (int i = 20; i < offsets.length; i++) {
+            assertTrue(offsets[i] >= 0 && offsets[i] < 80);
+            replayed.add(offsets[i]);
+        }
+        assertEquals(10, replayed.size());
+    }
+
+    @Test
+    public void replayIsBoundedByTheOlderWindows() {
+        int[] offsets = new FineTuner().replayRatio(3).trainingOffsets(10, 30);
+        int[] sorted = offsets.clone();
+        Arrays.sort(sorted);
+        int[] expected = new int[30];
+        Arrays.setAll(expected, i -> i);
+        assertArrayEquals(expected, sorted);
+
+        assertEquals(20, new FineTuner().replayRatio(0).trainingOffsets(10, 30).length);
+    }
+
+    @Test
+    public void fineTunedModelIsSavedAsTheNextVersion() throws IOException {
+        FeatureStore store = store();
+        File checkpoint = checkpoint(store, firstTimestamp + 149);
+        File output = new File(folder.getRoot(), "StockPriceLSTM_CLOSE_v2.zip");
+
+        ModelMetadata tuned = new FineTuner().epochs(1).batchSize(16).fineTune(checkpoint, store, output);
+
+        assertNotNull(tuned);
+        assertEquals(2, tuned.getVersion());
+        assertEquals(firstTimestamp + rows - 1, tuned.getLastTimestamp());
+        assertEquals(tuned.getLastTimestamp(), ModelArtifact.readMetadata(output).getLastTimestamp());
+    }
+
+    @Test
+    public void checkpointOfTheLastBarIsNotFineTuned() throws IOException {
+        FeatureStore store = store();
+        File checkpoint = checkpoint(store, firstTimestamp + rows - 1);
+        File output = new File(folder.getRoot(), "StockPriceLSTM_CLOSE_v2.zip");
+
+        assertNull(new FineTuner().epochs(1).fineTune(checkpoint, store, output));
+        assertFalse(output.exists());
+    }
+}
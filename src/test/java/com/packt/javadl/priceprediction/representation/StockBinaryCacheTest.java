@@ -0,0 +1,94 @@
+package com.packt.javadl.priceprediction.representation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StockBinaryCacheTest {
+
+    private static final String HEADER = "Currency,YYYYMMDD_HHMMSS,Open,High,Low,Close,Volume,WAP,Count,Minute,Tesla3,Tesla6,Tesla9,Decision,EXECUTE\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String writeCsv() throws IOException {
+        File csv = folder.newFile("CHF.csv");
+        Files.write(csv.toPath(), (HEADER
+                + "CHF,20200616  09:30:00,1.0574,1.0583,1.0573,1.0583,269,1.0578,111,30,0.408462,0.81675,1.225584,BUY,NO\n"
+                + "CHF,20200616  09:31:00,1.0583,1.0590,1.0580,1.0588,120,1.0585,52,31,0.41,0.82,1.23,SELL,EXECUTE\n"
+                + "CHF,20200616  09:32:00,1.0588,1.0589,1.0570,1.0571,310,1.0579,140,32,0.39,0.80,1.21,NO,NO\n")
+                .getBytes(StandardCharsets.UTF_8));
+        return csv.getPath();
+    }
+
+    @Test
+    public void mappedCacheHoldsTheParsedBars() throws IOException {
+        String csv = writeCsv();
+        FeatureStore parsed = StockBinaryCache.load(csv, "CHF");
+        assertTrue(parsed instanceof StockFeatureStore);
+        assertTrue(Files.exists(StockBinaryCache.cacheFileFor(csv)));
+
+        FeatureStore mapped = StockBinaryCache.load(csv, "CHF");
+        assertTrue(mapped instanceof MappedFeatureStore);
+        assertEquals(parsed.getSymbol(), mapped.getSymbol());
+        assertEquals(3, mapped.size());
+        for (int row = 0; row < parsed.size(); row++) {
+            assertEquals(parsed.getTimestamp(row), mapped.getTimestamp(row));
+            for (int k = 0; k < VECTOR_SIZE; k++) {
+                assertEquals(parsed.getValue(row, k), mapped.getValue(row, k), 0);
+            }
+        }
+        assertArrayEquals(parsed.getMinArray(), mapped.getMinArray(), 0);
+        assertArrayEquals(parsed.getMaxArray(), mapped.getMaxArray(), 0);
+    }
+
+    @Test
+    public void cacheOfAnotherVersionIsRejected() throws IOException {
+        String csv = writeCsv();
+        StockBinaryCache.load(csv, "CHF");
+        Path cache = StockBinaryCache.cacheFileFor(csv);
+
+        // the version follows the magic number
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).order(StockBinaryCache.BYTE_ORDER).putInt(0, 99), Integer.BYTES);
+        }
+        assertNull(StockBinaryCache.readHeader(cache));
+
+        assertTrue(StockBinaryCache.load(csv, "CHF") instanceof StockFeatureStore);
+        assertNotNull(StockBinaryCache.readHeader(cache));
+    }
+
+    @Test
+    public void changedCsvIsParsedAgain() throws IOException {
+        String csv = writeCsv();
+        StockBinaryCache.load(csv, "CHF");
+
+        Path path = new File(csv).toPath();
+        FileTime lastModified = Files.getLastModifiedTime(path);
+        Files.write(path, "CHF,20200616  09:33:00,1.0571,1.0575,1.0568,1.0574,90,1.0572,40,33,0.40,0.81,1.22,BUY,EXECUTE\n"
+                .getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified.toMillis() + 2000));
+
+        FeatureStore store = StockBinaryCache.load(csv, "CHF");
+        assertTrue(store instanceof StockFeatureStore);
+        assertEquals(4, store.size());
+        assertEquals(4, StockBinaryCache.readHeader(StockBinaryCache.cacheFileFor(csv)).rows);
+    }
+}
@@ -0,0 +1,73 @@
+package com.packt.javadl.priceprediction.representation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+import static org.junit.Assert.assertEquals;
+
+public class StockCsvReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void headerWithByteOrderMarkIsSkipped() throws IOException {
+        File csv = folder.newFile("AUD.csv");
+        Files.write(csv.toPath(), ("\uFEFFCurrency,YYYYMMDD_HHMMSS,Open,High,Low,Close,Volume,WAP,Count,Minute,Tesla3,Tesla6,Tesla9,Decision,EXECUTE\n"
+                + "AUD,20200616  09:30:00,0.6874,0.6883,0.6873,0.6881,269,0.6878,111,30,0.408462,0.81675,1.225584,BUY,NO\n"
+                + "AUD,20200616  09:31:00,0.6881,0.6890,0.6880,0.6888,120,0.6885,52,31,0.41,0.82,1.23,SELL,EXECUTE\n")
+                .getBytes(StandardCharsets.UTF_8));
+
+        List<Long> timestamps = new ArrayList<>();
+        List<double[]> bars = new ArrayList<>();
+        StockCsvReader reader = new StockCsvReader();
+        int rows = reader.read(csv.getPath(), (timestamp, features) -> {
+            timestamps.add(timestamp);
+            bars.add(features.clone());
+        });
+
+        assertEquals(2, rows);
+        assertEquals(20200616093000L, (long) timestamps.get(0));
+        assertEquals(0.6881, bars.get(0)[PriceCategory.CLOSE.featureIndex], 0);
+        assertEquals(1, bars.get(1)[PriceCategory.SELL.featureIndex], 0);
+        assertEquals(1, bars.get(1)[PriceCategory.EXECUTE.featureIndex], 0);
+        assertEquals(0.6873, reader.getMinArray()[PriceCategory.LOW.featureIndex], 0);
+        assertEquals(0.6890, reader.getMaxArray()[PriceCategory.HIGH.featureIndex], 0);
+    }
+
+    @Test
+    public void emptyTeslaFieldsAreZero() {
+        double[] features = new double[VECTOR_SIZE];
+        long timestamp = StockCsvReader.parseLine("CHF,20200616  09:30:00,1.0574,1.0583,1.0573,1.0583,269,1.0578,111,30,,, ,BUY,NO", features);
+
+        assertEquals(20200616093000L, timestamp);
+        assertEquals(30, features[PriceCategory.MINUTE.featureIndex], 0);
+        assertEquals(0, features[PriceCategory.TESLA3.featureIndex], 0);
+        assertEquals(0, features[PriceCategory.TESLA6.featureIndex], 0);
+        assertEquals(0, features[PriceCategory.TESLA9.featureIndex], 0);
+        assertEquals(1, features[PriceCategory.BUY.featureIndex], 0);
+        assertEquals(1, features[PriceCategory.NO_EXECUTE.featureIndex], 0);
+    }
+
+    @Test
+    public void missingSignalColumnsAreNoDecisionAndNoExecute() {
+        double[] features = new double[VECTOR_SIZE];
+        features[PriceCategory.BUY.featureIndex] = 1;
+        features[PriceCategory.EXECUTE.featureIndex] = 1;
+        StockCsvReader.parseLine("CHF,20200616  09:30:00,1.0574,1.0583,1.0573,1.0583,269,1.0578,111,30,0.4,0.8,1.2", features);
+
+        assertEquals(0, features[PriceCategory.BUY.featureIndex], 0);
+        assertEquals(1, features[PriceCategory.NO_DECISION.featureIndex], 0);
+        assertEquals(0, features[PriceCategory.EXECUTE.featureIndex], 0);
+        assertEquals(1, features[PriceCategory.NO_EXECUTE.featureIndex], 0);
+    }
+}
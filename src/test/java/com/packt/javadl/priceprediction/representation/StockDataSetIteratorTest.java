@@ -0,0 +1,80 @@
+package com.packt.javadl.priceprediction.representation;
+
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.packt.javadl.priceprediction.representation.StockDataSetIterator.VECTOR_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class StockDataSetIteratorTest {
+
+    private static final int rows = 200;
+    private static final int batchSize = 16;
+    private static final int exampleLength = 10;
+
+    /**
+     * OPEN of a bar is its row, so the first OPEN of a window identifies it
+     */
+    private static FeatureStore store() {
+        StockFeatureStore store = new StockFeatureStore("AUD");
+        double[] features = new double[VECTOR_SIZE];
+        for (int row = 0; row < rows; row++) {
+            for (int k = 0; k < StockCsvReader.NUMERIC_FEATURES; k++) features[k] = row + k;
+            features[PriceCategory.BUY.featureIndex] = row % 2;
+            features[PriceCategory.NO_DECISION.featureIndex] = 1 - row % 2;
+            features[PriceCategory.NO_EXECUTE.featureIndex] = 1;
+            store.append(20200616093000L + row, features);
+        }
+        return store;
+    }
+
+    private static StockDataSetIterator iterator(FeatureStore store, long seed) {
+        StockDataSetIterator iterator = new StockDataSetIterator(store, batchSize, exampleLength, 0.8, PriceCategory.BUY);
+        iterator.setShuffleSeed(seed);
+        return iterator;
+    }
+
+    /**
+     * @return start row of every window of the epoch, in the order they are served
+     */
+    private static List<Long> epochOrder(StockDataSetIterator iterator) {
+        List<Long> order = new ArrayList<>();
+        while (iterator.hasNext()) {
+            INDArray input = iterator.next().getFeatures();
+            for (int i = 0; i < input.size(0); i++) {
+                order.add(Math.round(input.getDouble(i, PriceCategory.OPEN.featureIndex, 0) * (rows - 1)));
+            }
+        }
+        return order;
+    }
+
+    @Test
+    public void sameSeedAndEpochGiveTheSameOrder() {
+        FeatureStore store = store();
+        StockDataSetIterator first = iterator(store, 42);
+        StockDataSetIterator second = iterator(store, 42);
+
+        List<Long> firstEpoch = epochOrder(first);
+        assertEquals(firstEpoch, epochOrder(second));
+        assertEquals(first.totalExamples(), firstEpoch.size());
+        assertEquals(firstEpoch.size(), new HashSet<>(firstEpoch).size());
+
+        first.reset();
+        second.reset();
+        List<Long> nextEpoch = epochOrder(first);
+        assertEquals(nextEpoch, epochOrder(second));
+        assertNotEquals(firstEpoch, nextEpoch);
+        assertEquals(new HashSet<>(firstEpoch), new HashSet<>(nextEpoch));
+    }
+
+    @Test
+    public void otherSeedGivesAnotherOrder() {
+        FeatureStore store = store();
+        assertNotEquals(epochOrder(iterator(store, 42)), epochOrder(iterator(store, 43)));
+    }
+}
@@ -0,0 +1,53 @@
+package com.packt.javadl.priceprediction.search;
+
+import com.packt.javadl.priceprediction.neuralnetwork.LstmHyperparameters;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SearchResultCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keyKeepsTheExactRatios() {
+        LstmHyperparameters candidate = new HyperparameterSpace().sample(new Random(12345));
+        LstmHyperparameters parsed = LstmHyperparameters.fromKey(candidate.key());
+
+        assertEquals(candidate, parsed);
+        assertEquals(candidate.key(), parsed.key());
+    }
+
+    @Test
+    public void candidatesCloserThanTheOldRoundingAreDistinct() {
+        LstmHyperparameters first = new LstmHyperparameters(2, 64, 2, 32, 0.05, 0.0012341, 22);
+        LstmHyperparameters second = new LstmHyperparameters(2, 64, 2, 32, 0.05, 0.0012344, 22);
+
+        assertNotEquals(first.key(), second.key());
+    }
+
+    @Test
+    public void scoredCandidatesAreReadBackExactly() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("search.tsv");
+        LstmHyperparameters candidate = new HyperparameterSpace().sample(new Random(7));
+        new SearchResultCache(file).put(new SearchResult(candidate, 61473, 0.0123456789, 84211));
+
+        SearchResultCache reread = new SearchResultCache(file);
+        SearchResult result = reread.get(candidate);
+        assertNotNull(result);
+        assertEquals(candidate, result.getHyperparameters());
+        assertEquals(0.0123456789, result.getValidationLoss(), 0);
+        assertEquals(61473, result.getNumParams());
+        assertNull(reread.get(new HyperparameterSpace().sample(new Random(8))));
+    }
+}